@@ -0,0 +1,293 @@
+import benchmarks.BenchmarkTarget;
+import io.codearte.jfairy.Fairy;
+import io.codearte.jfairy.producer.person.Person;
+import io.codearte.jfairy.producer.text.TextProducer;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark targets over the application classes, created by name from the benchmarks package.
+ * DBOperation targets borrow a pooled connection for the whole trial and use a DBOperation
+ * without product cache or invalidation bus, so every call reaches the database.
+ * Failures the workload expects (duplicate reviews, out of stock, serialization failures, ...)
+ * are returned as BenchmarkTarget.ExpectedFailure for the benchmark to count. submitOrder
+ * restores the stock of every product to BENCHMARK_STOCK before each iteration, so orders
+ * of an iteration can not drain it and time the out of stock path instead.
+ *
+ * @author Abhishek Inamdar
+ */
+public class BenchmarkTargets extends Utility {
+    static final String ASSEMBLE_PRODUCT_WITH_REVIEWS = "assembleProductWithReviews";
+    static final String POPULATE_PRODUCT_QUANTITY_MAP = "populateProductQuantityMap";
+    static final String FAIRY_CREATE_PERSON = "fairyCreatePerson";
+    static final String FAIRY_PERSON = "fairyPerson";
+    static final String FAIRY_PRODUCT_TEXT = "fairyProductText";
+    static final String FAIRY_REVIEW_TEXT = "fairyReviewText";
+    static final String SYNTHETIC_NAME = "syntheticName";
+    static final String SYNTHETIC_PRODUCT_TEXT = "syntheticProductText";
+    static final String SYNTHETIC_REVIEW_TEXT = "syntheticReviewText";
+
+    static final int BENCHMARK_STOCK = 1_000_000;
+    static final String RESEED_STOCK = "UPDATE PRODUCTS SET STOCK = ? WHERE STOCK < ?";
+    static final String SELECT_MOST_REVIEWED_PRODUCT =
+            "SELECT PRODUCT_ID FROM REVIEWS GROUP BY PRODUCT_ID ORDER BY COUNT(*) DESC LIMIT 1";
+
+    /**
+     * New accounts are named jmh&lt;base 36 sequence&gt;, unique across runs and within USER_NAME length
+     */
+    private static final AtomicLong ACCOUNT_SEQUENCE = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Creates target
+     *
+     * @param name    Operation name of Utility.OPERATIONS or one of the target names of this class
+     * @param variant "join" or "two-query" for operations, empty for PRODUCT_REVIEWS_QUERY property;
+     *                key distribution for populateProductQuantityMap
+     * @return BenchmarkTarget object
+     * @throws SQLException If target can not be set up
+     */
+    public static BenchmarkTarget create(String name, String variant) throws SQLException {
+        switch (name) {
+            case ASSEMBLE_PRODUCT_WITH_REVIEWS:
+                return assembleProductWithReviews();
+            case POPULATE_PRODUCT_QUANTITY_MAP:
+                KeyDistribution products = KeyDistribution.parse(variant.isEmpty() ? "uniform" : variant, NUM_PRODUCTS);
+                return target(() -> {
+                    Map<Integer, Integer> productQuantities = new HashMap<>();
+                    populateProductQuantityMap(productQuantities, products);
+                    return productQuantities;
+                }, null, null);
+            case FAIRY_CREATE_PERSON:
+                return target(() -> Fairy.create().person(), null, null);
+            case FAIRY_PERSON:
+                Fairy fairy = Fairy.create();
+                return target(fairy::person, null, null);
+            case FAIRY_PRODUCT_TEXT:
+                TextProducer productText = Fairy.create().textProducer();
+                return target(() -> new String[]{productText.randomString(15), productText.randomString(50)},
+                        null, null);
+            case FAIRY_REVIEW_TEXT:
+                TextProducer reviewText = Fairy.create().textProducer();
+                return target(reviewText::text, null, null);
+            case SYNTHETIC_NAME:
+                return target(SyntheticData.getDefault()::nextName, null, null);
+            case SYNTHETIC_PRODUCT_TEXT:
+                return target(() -> new String[]{SyntheticData.randomString(15), SyntheticData.randomString(50)},
+                        null, null);
+            case SYNTHETIC_REVIEW_TEXT:
+                return target(SyntheticData.getDefault()::nextReviewText, null, null);
+            default:
+                return operation(name, variant);
+        }
+    }
+
+    /**
+     * Runs one DBOperation method with the arguments Evaluate would use. Text columns are
+     * generated once, so the call measures the database work only
+     */
+    private static BenchmarkTarget operation(String name, String variant) throws SQLException {
+        int operationIndex = operationIndex(name);
+        boolean joinProductReviews = "join".equalsIgnoreCase(variant.isEmpty()
+                ? DBBase.getProperty("PRODUCT_REVIEWS_QUERY", "two-query") : variant);
+        DBOperation operation = new DBOperation(TransactionExecutor.getDefault(), joinProductReviews,
+                null, null, PartitionManager.isEnabled());
+        WorkloadKeys keys = WorkloadKeys.fromProfile(WorkloadProfile.fromProperties());
+        KeyDistribution products = keys.products(operationIndex);
+        KeyDistribution users = keys.users(operationIndex);
+
+        Fairy fairy = Fairy.create();
+        Person person = fairy.person();
+        TextProducer text = fairy.textProducer();
+        String productName = text.randomString(15);
+        String productDesc = text.randomString(50);
+        String reviewText = text.text();
+
+        Connection con = DBBase.getConnection();
+        Callable<Object> call;
+        switch (name) {
+            case CREATE_ACCOUNT:
+                call = () -> {
+                    String userName = "jmh" + Long.toString(ACCOUNT_SEQUENCE.incrementAndGet(), 36);
+                    operation.createAccount(con, userName, PASSWORD_PREFIX, person.getFirstName(),
+                            person.getLastName());
+                    return userName;
+                };
+                break;
+            case ADD_PRODUCT:
+                call = () -> operation.addProduct(con, productName, productDesc,
+                        doubleBetween(MIN_PRODUCT_PRICE, MAX_PRODUCT_PRICE),
+                        intBetween(MIN_PRODUCT_STOCK, MAX_PRODUCT_STOCK));
+                break;
+            case UPDATE_STOCK_LEVEL:
+                call = () -> {
+                    int productId = products.next();
+                    operation.updateStockLevel(con, productId, intBetween(MIN_PRODUCT_STOCK, MAX_PRODUCT_STOCK));
+                    return productId;
+                };
+                break;
+            case GET_PRODUCT_REVIEWS:
+                call = () -> operation.getProductAndReviews(con, products.next());
+                break;
+            case GET_AVERAGE_RATING:
+                call = () -> operation.getAverageUserRating(con, USER_NAME_PREFIX + users.next());
+                break;
+            case GET_AVERAGE_PRODUCT_RATING:
+                call = () -> operation.getAverageProductRating(con, products.next());
+                break;
+            case SUBMIT_ORDER:
+                call = () -> {
+                    int userId = users.next();
+                    Map<Integer, Integer> productQuantities = new HashMap<>();
+                    populateProductQuantityMap(productQuantities, products);
+                    operation.submitOrder(con, getRandomOrderDate(), USER_NAME_PREFIX + userId,
+                            PASSWORD_PREFIX + userId, productQuantities);
+                    return productQuantities;
+                };
+                break;
+            case POST_REVIEW:
+                call = () -> {
+                    int userId = users.next();
+                    operation.postReview(con, USER_NAME_PREFIX + userId, PASSWORD_PREFIX + userId,
+                            products.next(), doubleBetween(MIN_REVIEW_RATING, MAX_REVIEW_RATING), reviewText);
+                    return userId;
+                };
+                break;
+            default:
+                con.close();
+                throw new IllegalArgumentException("Unknown benchmark target " + name);
+        }
+        Callable<Object> reset = SUBMIT_ORDER.equals(name) ? () -> reseedStock(con) : null;
+        return target(() -> {
+            try {
+                return call.call();
+            } catch (SQLException e) {
+                BenchmarkTarget.Outcome outcome = expectedOutcome(e.getSQLState());
+                if (Objects.isNull(outcome)) {
+                    throw e;
+                }
+                return new BenchmarkTarget.ExpectedFailure(outcome, e.getSQLState());
+            }
+        }, con::close, reset);
+    }
+
+    /**
+     * Assembles ProductInformation of the most reviewed product from a disconnected copy
+     * of its SELECT_PRODUCT_WITH_REVIEWS rows, without any database round trip
+     */
+    private static BenchmarkTarget assembleProductWithReviews() throws SQLException {
+        CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+        int productId = 1;
+        Connection con = DBBase.getConnection();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = con.prepareStatement(SELECT_MOST_REVIEWED_PRODUCT);
+            rs = stmt.executeQuery();
+            if (rs.next()) {
+                productId = rs.getInt(1);
+            }
+            rs.close();
+            stmt.close();
+
+            stmt = con.prepareStatement(DBOperation.SELECT_PRODUCT_WITH_REVIEWS);
+            stmt.setInt(1, productId);
+            rs = stmt.executeQuery();
+            rows.populate(rs);
+        } finally {
+            if (!Objects.isNull(rs)) {
+                rs.close();
+            }
+            if (!Objects.isNull(stmt)) {
+                stmt.close();
+            }
+            con.close();
+        }
+        int assembledProductId = productId;
+        return target(() -> {
+            rows.beforeFirst();
+            return DBOperation.assembleProductWithReviews(rows, assembledProductId);
+        }, rows::close, null);
+    }
+
+    /**
+     * @return outcome of a failure the workload expects, null for unexpected failures
+     */
+    private static BenchmarkTarget.Outcome expectedOutcome(String sqlState) {
+        if (CONSTRAINT_SQL_STATE.equals(sqlState)) {
+            return BenchmarkTarget.Outcome.OUT_OF_STOCK;
+        }
+        if (SERIALIZATION_FAILURE_SQL_STATE.equals(sqlState) || DEADLOCK_SQL_STATE.equals(sqlState)) {
+            return BenchmarkTarget.Outcome.CONCURRENCY_FAILURE;
+        }
+        if (DUPLICATE_SQL_STATE.equals(sqlState)
+                || FK_CONSTRAINT_SQL_STATE.equals(sqlState)
+                || TRANSACTION_BLOCKED_STATE.equals(sqlState)) {
+            return BenchmarkTarget.Outcome.CONSTRAINT_VIOLATION;
+        }
+        return null;
+    }
+
+    /**
+     * Raises the stock of every product below BENCHMARK_STOCK back to it
+     */
+    private static Object reseedStock(Connection con) throws SQLException {
+        PreparedStatement stmt = null;
+        try {
+            con.setAutoCommit(true);
+            stmt = con.prepareStatement(RESEED_STOCK);
+            stmt.setInt(1, BENCHMARK_STOCK);
+            stmt.setInt(2, BENCHMARK_STOCK);
+            return stmt.executeUpdate();
+        } finally {
+            if (!Objects.isNull(stmt)) {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Connection or row set held by a target
+     */
+    private interface Resource {
+        void close() throws SQLException;
+    }
+
+    /**
+     * @param call     Benchmarked call
+     * @param resource Resource closed with the target, may be null
+     * @param reset    Call restoring consumed data before every iteration, may be null
+     * @return BenchmarkTarget object
+     */
+    private static BenchmarkTarget target(Callable<Object> call, Resource resource, Callable<Object> reset) {
+        return new BenchmarkTarget() {
+            @Override
+            public Object invoke() throws Exception {
+                return call.call();
+            }
+
+            @Override
+            public void reset() throws Exception {
+                if (!Objects.isNull(reset)) {
+                    reset.call();
+                }
+            }
+
+            @Override
+            public void close() throws SQLException {
+                if (!Objects.isNull(resource)) {
+                    resource.close();
+                }
+            }
+        };
+    }
+}
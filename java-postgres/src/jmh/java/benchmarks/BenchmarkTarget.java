@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.sql.SQLException;
+
+/**
+ * Single benchmarked call of the application.
+ * JMH rejects benchmarks in the default package and named packages can not refer to
+ * the application classes, so targets are implemented by BenchmarkTargets in the
+ * default package and looked up once per trial.
+ *
+ * @author Abhishek Inamdar
+ */
+public interface BenchmarkTarget extends AutoCloseable {
+
+    /**
+     * How a call that failed the way the workload expects failed
+     */
+    enum Outcome {
+        OUT_OF_STOCK, CONCURRENCY_FAILURE, CONSTRAINT_VIOLATION
+    }
+
+    /**
+     * Result of a call that failed the way the workload expects, counted by the benchmark
+     * instead of being timed as a regular result
+     */
+    final class ExpectedFailure {
+        private final Outcome outcome;
+        private final String sqlState;
+
+        public ExpectedFailure(Outcome outcome, String sqlState) {
+            this.outcome = outcome;
+            this.sqlState = sqlState;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        @Override
+        public String toString() {
+            return outcome + "(" + sqlState + ")";
+        }
+    }
+
+    /**
+     * Performs the call
+     *
+     * @return result of the call, to be consumed by the benchmark
+     * @throws Exception If the call fails unexpectedly
+     */
+    Object invoke() throws Exception;
+
+    /**
+     * Restores the data the call consumes, called before every iteration
+     *
+     * @throws Exception If data can not be restored
+     */
+    default void reset() throws Exception {
+    }
+
+    /**
+     * Releases the resources of the target, narrowed from AutoCloseable so that closing
+     * can not throw InterruptedException
+     *
+     * @throws SQLException If a resource can not be closed
+     */
+    @Override
+    void close() throws SQLException;
+
+    /**
+     * Creates target
+     *
+     * @param name    Target name
+     * @param variant Target variant, e.g. key distribution or query style
+     * @return BenchmarkTarget object
+     * @throws Exception If target does not exist or can not be set up
+     */
+    static BenchmarkTarget create(String name, String variant) throws Exception {
+        return (BenchmarkTarget) Class.forName("BenchmarkTargets")
+                .getMethod("create", String.class, String.class)
+                .invoke(null, name, variant);
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of every DBOperation method against the database of db.properties,
+ * which must be initialized first (./gradlew run -PmainClass=DBInitialize).
+ * Each benchmark thread holds its own pooled connection.
+ * Failures the workload expects are counted per iteration next to the score (successes,
+ * outOfStock, concurrencyFailures, constraintViolations), so an iteration timing mostly
+ * failures shows; product stock is restored before every submitOrder iteration.
+ *
+ * @author Abhishek Inamdar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class DBOperationBenchmark {
+
+    @Param({"createAccount", "addProduct", "updateStockLevel", "getProductAndReviews",
+            "getAverageUserRating", "submitOrder", "postReview", "getAverageProductRating"})
+    public String operation;
+
+    private BenchmarkTarget target;
+
+    /**
+     * Outcomes of the calls of one thread in one iteration
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+        public long successes;
+        public long outOfStock;
+        public long concurrencyFailures;
+        public long constraintViolations;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            successes = 0;
+            outOfStock = 0;
+            concurrencyFailures = 0;
+            constraintViolations = 0;
+        }
+
+        void record(Object result) {
+            if (!(result instanceof BenchmarkTarget.ExpectedFailure)) {
+                successes++;
+                return;
+            }
+            switch (((BenchmarkTarget.ExpectedFailure) result).getOutcome()) {
+                case OUT_OF_STOCK:
+                    outOfStock++;
+                    break;
+                case CONCURRENCY_FAILURE:
+                    concurrencyFailures++;
+                    break;
+                default:
+                    constraintViolations++;
+                    break;
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        target = BenchmarkTarget.create(operation, "");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetData() throws Exception {
+        target.reset();
+    }
+
+    @Benchmark
+    public Object call(Outcomes outcomes) throws Exception {
+        Object result = target.invoke();
+        outcomes.record(result);
+        return result;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        target.close();
+    }
+}
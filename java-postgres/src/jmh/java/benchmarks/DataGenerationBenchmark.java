@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side data generation of the workload, no database needed:
+ * order product maps over a key distribution, JFairy rows with and without creating
+ * Fairy per call, and the SyntheticData buffers and random strings used by the operation handlers.
+ *
+ * @author Abhishek Inamdar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DataGenerationBenchmark {
+
+    @State(Scope.Thread)
+    public static class OrderState {
+        @Param({"uniform", "zipfian:0.99", "hotspot:0.2:0.8"})
+        public String distribution;
+
+        BenchmarkTarget target;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            target = BenchmarkTarget.create("populateProductQuantityMap", distribution);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            target.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FairyState {
+        @Param({"fairyCreatePerson", "fairyPerson", "fairyProductText", "fairyReviewText",
+                "syntheticName", "syntheticProductText", "syntheticReviewText"})
+        public String generator;
+
+        BenchmarkTarget target;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            target = BenchmarkTarget.create(generator, "");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            target.close();
+        }
+    }
+
+    @Benchmark
+    public Object populateProductQuantityMap(OrderState state) throws Exception {
+        return state.target.invoke();
+    }
+
+    @Benchmark
+    public Object fairy(FairyState state) throws Exception {
+        return state.target.invoke();
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProductInformation assembly: in memory from the cached rows of the most reviewed product,
+ * and end to end through getProductAndReviews with the join and two-query styles.
+ *
+ * @author Abhishek Inamdar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductAssemblyBenchmark {
+
+    @State(Scope.Thread)
+    public static class RowSetState {
+        BenchmarkTarget target;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            target = BenchmarkTarget.create("assembleProductWithReviews", "");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            target.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class QueryState {
+        @Param({"join", "two-query"})
+        public String queryStyle;
+
+        BenchmarkTarget target;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            target = BenchmarkTarget.create("getProductAndReviews", queryStyle);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            target.close();
+        }
+    }
+
+    @Benchmark
+    public Object assembleFromRows(RowSetState state) throws Exception {
+        return state.target.invoke();
+    }
+
+    @Benchmark
+    public Object getProductAndReviews(QueryState state) throws Exception {
+        return state.target.invoke();
+    }
+}
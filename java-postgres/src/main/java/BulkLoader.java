@@ -0,0 +1,305 @@
+import io.codearte.jfairy.Fairy;
+import io.codearte.jfairy.producer.person.Person;
+import io.codearte.jfairy.producer.text.TextProducer;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bulk loads randomly generated data using PostgreSQL COPY FROM STDIN.
+ * Rows are generated while streaming, only one chunk of rows is kept in memory.
+ *
+ * @author Abhishek Inamdar
+ */
+public class BulkLoader extends Utility {
+    static final String COPY_PRODUCTS =
+            "COPY PRODUCTS(PRODUCT_ID, NAME, DESCRIPTION, PRICE, STOCK) FROM STDIN WITH (FORMAT csv)";
+    static final String COPY_USERS =
+            "COPY USERS(USER_NAME, PASSWORD, FIRST_NAME, LAST_NAME) FROM STDIN WITH (FORMAT csv)";
+    static final String COPY_REVIEWS =
+            "COPY REVIEWS(USER_NAME, PRODUCT_ID, REVIEW_TEXT, RATING, REVIEW_DATE) FROM STDIN WITH (FORMAT csv)";
+    static final String COPY_ORDERS =
+            "COPY ORDERS(ORDER_ID, USER_NAME, ORDER_DATE) FROM STDIN WITH (FORMAT csv)";
+    static final String COPY_ORDER_DETAILS =
+            "COPY ORDER_DETAILS(ORDER_ID, PRODUCT_ID, QUANTITY) FROM STDIN WITH (FORMAT csv)";
+    static final String COPY_PARTITIONED_ORDER_DETAILS =
+            "COPY ORDER_DETAILS(ORDER_ID, PRODUCT_ID, QUANTITY, ORDER_DATE) FROM STDIN WITH (FORMAT csv)";
+    static final String RESET_PRODUCTS_SEQUENCE =
+            "SELECT setval(pg_get_serial_sequence('products', 'product_id'), " +
+                    " (SELECT COALESCE(MAX(PRODUCT_ID), 0) + 1 FROM PRODUCTS), false)";
+    static final String RESET_ORDERS_SEQUENCE =
+            "SELECT setval(pg_get_serial_sequence('orders', 'order_id'), " +
+                    " (SELECT COALESCE(MAX(ORDER_ID), 0) + 1 FROM ORDERS), false)";
+
+    /**
+     * Size of the buffered rows after which they are sent to the server
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Writes CSV row(s) for the given key
+     */
+    public interface RowWriter {
+        void write(int key, StringBuilder out);
+    }
+
+    /**
+     * Loads all the tables.
+     * Orders are loaded without decrementing product stock, the generated stock
+     * is treated as the stock left after these orders.
+     * Rating summaries are rebuilt from the loaded reviews.
+     *
+     * @throws SQLException If an SQL Error occurs
+     */
+    public void load() throws SQLException {
+        int parallelism = DBBase.getIntProperty("SEED_PARALLELISM", Runtime.getRuntime().availableProcessors());
+        if (parallelism > 1) {
+            loadParallel(parallelism);
+            return;
+        }
+        Fairy fairy = Fairy.create();
+        copy(COPY_PRODUCTS, 1, NUM_PRODUCTS, productWriter(fairy));
+        copy(COPY_USERS, 1, NUM_USERS, userWriter(fairy));
+        copy(COPY_REVIEWS, 1, NUM_USERS, reviewWriter(fairy));
+        copy(COPY_ORDERS, 1, NUM_ORDERS, orderWriter());
+        copy(copyOrderDetails(), 1, NUM_ORDERS, orderDetailsWriter(PartitionManager.isEnabled()));
+        resetSequences();
+        new RatingSummaryChecker().rebuild();
+    }
+
+    /**
+     * Loads all the tables through SeedPipeline.
+     * Tables are loaded one after another so that referenced rows always exist
+     * before the referencing ones; rows of a table are generated and loaded in parallel.
+     * Loader connections are configured with SEED_LOADER_CONNECTIONS and
+     * bounded by the pool size, queued chunks with SEED_QUEUE_CAPACITY.
+     *
+     * @param parallelism Number of generator threads
+     * @throws SQLException If an SQL Error occurs
+     */
+    public void loadParallel(int parallelism) throws SQLException {
+        int loaders = Math.min(DBBase.getIntProperty("SEED_LOADER_CONNECTIONS", parallelism),
+                DBBase.getIntProperty("POOL_MAX_SIZE", MAX_THREADS_TO_RUN));
+        SeedPipeline pipeline = new SeedPipeline(parallelism, loaders,
+                DBBase.getIntProperty("SEED_QUEUE_CAPACITY", 4 * parallelism));
+        pipeline.load(COPY_PRODUCTS, 1, NUM_PRODUCTS, this::productWriter);
+        pipeline.load(COPY_USERS, 1, NUM_USERS, this::userWriter);
+        pipeline.load(COPY_REVIEWS, 1, NUM_USERS, this::reviewWriter);
+        pipeline.load(COPY_ORDERS, 1, NUM_ORDERS, fairy -> orderWriter());
+        pipeline.load(copyOrderDetails(), 1, NUM_ORDERS,
+                fairy -> orderDetailsWriter(PartitionManager.isEnabled()));
+        resetSequences();
+        new RatingSummaryChecker().rebuild();
+    }
+
+    /**
+     * Streams rows for keys from..to (both inclusive) through a COPY statement
+     * on its own connection and transaction
+     *
+     * @param copySql COPY FROM STDIN statement
+     * @param from    First key
+     * @param to      Last key
+     * @param writer  Row generator
+     * @return number of rows loaded
+     * @throws SQLException If an SQL Error occurs
+     */
+    public long copy(String copySql, int from, int to, RowWriter writer) throws SQLException {
+        final long startTime = System.nanoTime();
+        long rows;
+        try (Connection con = DBBase.getConnection()) {
+            con.setAutoCommit(false);
+            CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+            CopyIn copyIn = copyManager.copyIn(copySql);
+            try {
+                StringBuilder buffer = new StringBuilder(CHUNK_SIZE + 1024);
+                for (int key = from; key <= to; key++) {
+                    writer.write(key, buffer);
+                    if (buffer.length() >= CHUNK_SIZE) {
+                        flush(copyIn, buffer);
+                    }
+                }
+                flush(copyIn, buffer);
+                rows = copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            con.commit();
+        }
+        report(copySql, rows, System.nanoTime() - startTime);
+        return rows;
+    }
+
+    /**
+     * Moves serial sequences past the explicitly loaded IDs
+     *
+     * @throws SQLException If an SQL Error occurs
+     */
+    public void resetSequences() throws SQLException {
+        try (Connection con = DBBase.getConnection()) {
+            con.setAutoCommit(true);
+            Statement stmt = null;
+            try {
+                stmt = con.createStatement();
+                stmt.execute(RESET_PRODUCTS_SEQUENCE);
+                stmt.execute(RESET_ORDERS_SEQUENCE);
+            } finally {
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Product ID is the key
+     */
+    public RowWriter productWriter(Fairy fairy) {
+        TextProducer text = fairy.textProducer();
+        return (productId, out) -> {
+            out.append(productId).append(',');
+            appendText(out, text.randomString(15)).append(',');
+            appendText(out, text.randomString(50)).append(',');
+            out.append(doubleBetween(MIN_PRODUCT_PRICE, MAX_PRODUCT_PRICE)).append(',')
+                    .append(intBetween(MIN_PRODUCT_STOCK, MAX_PRODUCT_STOCK)).append('\n');
+        };
+    }
+
+    /**
+     * User ID is the key
+     */
+    public RowWriter userWriter(Fairy fairy) {
+        return (userId, out) -> {
+            Person person = fairy.person();
+            out.append(USER_NAME_PREFIX).append(userId).append(',')
+                    .append(PASSWORD_PREFIX).append(userId).append(',');
+            appendText(out, person.getFirstName()).append(',');
+            appendText(out, person.getLastName()).append('\n');
+        };
+    }
+
+    /**
+     * User ID is the key, all the reviews of that user are written.
+     * Products are distinct per user so that (USER_NAME, PRODUCT_ID) stays unique.
+     */
+    public RowWriter reviewWriter(Fairy fairy) {
+        TextProducer text = fairy.textProducer();
+        int reviewsPerUser = NUM_REVIEWS / NUM_USERS;
+        int remainder = NUM_REVIEWS % NUM_USERS;
+        int[] productIds = new int[Math.min(NUM_PRODUCTS, reviewsPerUser + 1)];
+        return (userId, out) -> {
+            int count = Math.min(productIds.length, reviewsPerUser + (userId <= remainder ? 1 : 0));
+            for (int i = 0; i < count; i++) {
+                productIds[i] = distinctProductId(productIds, i);
+                out.append(USER_NAME_PREFIX).append(userId).append(',')
+                        .append(productIds[i]).append(',');
+                appendText(out, text.text()).append(',');
+                out.append(doubleBetween(MIN_REVIEW_RATING, MAX_REVIEW_RATING)).append(',')
+                        .append(Timestamp.valueOf(LocalDateTime.now())).append('\n');
+            }
+        };
+    }
+
+    /**
+     * Order ID is the key
+     */
+    public RowWriter orderWriter() {
+        return (orderId, out) -> out.append(orderId).append(',')
+                .append(USER_NAME_PREFIX).append(intBetween(1, NUM_USERS)).append(',')
+                .append(orderDate(orderId)).append('\n');
+    }
+
+    /**
+     * Order ID is the key, all the products of that order are written
+     *
+     * @param withOrderDate true to write ORDER_DATE, the partition key of partitioned ORDER_DETAILS
+     */
+    public RowWriter orderDetailsWriter(boolean withOrderDate) {
+        Map<Integer, Integer> productQuantities = new HashMap<>();
+        return (orderId, out) -> {
+            productQuantities.clear();
+            populateProductQuantityMap(productQuantities);
+            Timestamp orderDate = withOrderDate ? orderDate(orderId) : null;
+            for (Map.Entry<Integer, Integer> entry : productQuantities.entrySet()) {
+                out.append(orderId).append(',')
+                        .append(entry.getKey()).append(',')
+                        .append(entry.getValue());
+                if (withOrderDate) {
+                    out.append(',').append(orderDate);
+                }
+                out.append('\n');
+            }
+        };
+    }
+
+    /**
+     * Random looking order date derived from the order ID, so that ORDERS and
+     * ORDER_DETAILS rows generated independently agree on it
+     */
+    static Timestamp orderDate(int orderId) {
+        long hash = orderId * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 31;
+        return new Timestamp(MIN_ORDER_DATE + Math.floorMod(hash, MAX_ORDER_DATE - MIN_ORDER_DATE + 1));
+    }
+
+    private static String copyOrderDetails() {
+        return PartitionManager.isEnabled() ? COPY_PARTITIONED_ORDER_DETAILS : COPY_ORDER_DETAILS;
+    }
+
+    /**
+     * Picks random product ID not present in first count elements of chosen
+     */
+    private static int distinctProductId(int[] chosen, int count) {
+        while (true) {
+            int productId = intBetween(1, NUM_PRODUCTS);
+            boolean duplicate = false;
+            for (int i = 0; i < count && !duplicate; i++) {
+                duplicate = chosen[i] == productId;
+            }
+            if (!duplicate) {
+                return productId;
+            }
+        }
+    }
+
+    /**
+     * Appends quoted CSV field
+     */
+    private static StringBuilder appendText(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        return out.append('"');
+    }
+
+    private static void flush(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() > 0) {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+
+    static void report(String copySql, long rows, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        String table = copySql.substring("COPY ".length(), copySql.indexOf('('));
+        System.out.println("Loaded " + rows + " rows into " + table + " in "
+                + String.format("%.2f", seconds) + "s (" + Math.round(rows / Math.max(seconds, 1e-9)) + " rows/sec)");
+    }
+}
@@ -0,0 +1,406 @@
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Propagates cache invalidations between application nodes using PostgreSQL LISTEN/NOTIFY.
+ * Write paths publish the changed product IDs and user names; they are coalesced
+ * and sent in batches every flush interval on a dedicated connection, so the flusher never
+ * competes with the workers for pooled connections. Every node listens on another dedicated
+ * connection and evicts the products changed by the other nodes.
+ * Payload format: nodeId;p=1,2,3;u=user1,user2
+ *
+ * @author Abhishek Inamdar
+ */
+public class CacheInvalidationBus {
+    static final String CHANNEL = "ecom_invalidation";
+    static final String NOTIFY = "SELECT pg_notify(?, ?)";
+    static final String LISTEN = "LISTEN " + CHANNEL;
+
+    /**
+     * NOTIFY payload must be shorter than 8000 bytes
+     */
+    static final int MAX_PAYLOAD_LENGTH = 7900;
+
+    private static CacheInvalidationBus defaultBus = null;
+    private static boolean defaultBusCreated = false;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final ProductCache productCache;
+    private final Set<Integer> pendingProducts = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingUsers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+    private final Thread listener;
+    private volatile boolean running = true;
+    /**
+     * Connection of the flusher, only used by the flusher thread and by close after it stopped
+     */
+    private Connection notifyConnection = null;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder notificationsSent = new LongAdder();
+    private final LongAdder notificationsReceived = new LongAdder();
+    private final LongAdder remoteProductEvictions = new LongAdder();
+    private final LongAdder remoteUserInvalidations = new LongAdder();
+    private final LongAdder malformedNotifications = new LongAdder();
+
+    /**
+     * Decoded payload
+     */
+    static final class Invalidation {
+        final String nodeId;
+        final List<Integer> productIds;
+        final List<String> userNames;
+
+        private Invalidation(String nodeId, List<Integer> productIds, List<String> userNames) {
+            this.nodeId = nodeId;
+            this.productIds = productIds;
+            this.userNames = userNames;
+        }
+    }
+
+    /**
+     * Creates bus and starts flusher and listener threads
+     *
+     * @param productCache  Cache evicted on remote invalidations
+     * @param flushInterval Interval in milliseconds at which pending invalidations are sent
+     */
+    public CacheInvalidationBus(ProductCache productCache, long flushInterval) {
+        this(productCache);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        listener.start();
+    }
+
+    /**
+     * Creates bus without starting its threads, nothing is sent or received until they are started
+     *
+     * @param productCache Cache evicted on remote invalidations
+     */
+    CacheInvalidationBus(ProductCache productCache) {
+        this.productCache = productCache;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listener = new Thread(this::listen, "invalidation-listener");
+        listener.setDaemon(true);
+    }
+
+    /**
+     * Returns bus configured with INVALIDATION_BUS_ENABLED and INVALIDATION_FLUSH_MS properties.
+     * Bus is only created when the default ProductCache is enabled
+     *
+     * @return CacheInvalidationBus object or null if disabled
+     */
+    public static synchronized CacheInvalidationBus getDefault() {
+        if (!defaultBusCreated) {
+            defaultBusCreated = true;
+            ProductCache productCache = ProductCache.getDefault();
+            if (!Objects.isNull(productCache)
+                    && Boolean.parseBoolean(DBBase.getProperty("INVALIDATION_BUS_ENABLED", "false"))) {
+                defaultBus = new CacheInvalidationBus(productCache,
+                        DBBase.getLongProperty("INVALIDATION_FLUSH_MS", 20));
+            }
+        }
+        return defaultBus;
+    }
+
+    /**
+     * Stops the default bus after sending pending invalidations
+     */
+    public static synchronized void shutdownDefault() {
+        if (!Objects.isNull(defaultBus)) {
+            defaultBus.close();
+            defaultBus = null;
+            defaultBusCreated = false;
+        }
+    }
+
+    /**
+     * Queues invalidation of a product, called after the change committed
+     *
+     * @param productId Product ID
+     */
+    public void publishProduct(int productId) {
+        pendingProducts.add(productId);
+        published.increment();
+    }
+
+    /**
+     * Queues invalidation of a user, called after the change committed
+     *
+     * @param userName Username
+     */
+    public void publishUser(String userName) {
+        pendingUsers.add(userName);
+        published.increment();
+    }
+
+    /**
+     * Sends pending invalidations and stops the threads
+     */
+    public void close() {
+        running = false;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            flush();
+            listener.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            System.err.println("Error sending cache invalidations " + e.getMessage());
+        } finally {
+            closeNotifyConnection();
+        }
+    }
+
+    public String getStats() {
+        return "CacheInvalidationBus{node=" + nodeId +
+                ", published=" + published.sum() +
+                ", notificationsSent=" + notificationsSent.sum() +
+                ", notificationsReceived=" + notificationsReceived.sum() +
+                ", remoteProductEvictions=" + remoteProductEvictions.sum() +
+                ", remoteUserInvalidations=" + remoteUserInvalidations.sum() +
+                ", malformedNotifications=" + malformedNotifications.sum() +
+                '}';
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.err.println("Error sending cache invalidations " + e.getSQLState() + e.getMessage());
+        }
+    }
+
+    /**
+     * Drains coalesced invalidations into as few payloads as possible and sends them.
+     * If sending fails the drained invalidations are queued again and the connection
+     * is reopened by the next flush; receivers evicting twice is harmless.
+     */
+    private void flush() throws SQLException {
+        if (pendingProducts.isEmpty() && pendingUsers.isEmpty()) {
+            return;
+        }
+        List<Integer> drainedProducts = new ArrayList<>();
+        List<String> drainedUsers = new ArrayList<>();
+        for (Integer productId : pendingProducts) {
+            pendingProducts.remove(productId);
+            drainedProducts.add(productId);
+        }
+        for (String userName : pendingUsers) {
+            pendingUsers.remove(userName);
+            drainedUsers.add(userName);
+        }
+        List<String> payloads = encode(nodeId, drainedProducts, drainedUsers);
+
+        PreparedStatement stmt = null;
+        try {
+            if (Objects.isNull(notifyConnection)) {
+                notifyConnection = DBBase.newDedicatedConnection();
+                notifyConnection.setAutoCommit(true);
+            }
+            stmt = notifyConnection.prepareStatement(NOTIFY);
+            for (String payload : payloads) {
+                stmt.setString(1, CHANNEL);
+                stmt.setString(2, payload);
+                stmt.execute();
+                notificationsSent.increment();
+            }
+        } catch (SQLException e) {
+            pendingProducts.addAll(drainedProducts);
+            pendingUsers.addAll(drainedUsers);
+            closeNotifyConnection();
+            throw e;
+        } finally {
+            if (!Objects.isNull(stmt)) {
+                try {
+                    stmt.close();
+                } catch (SQLException e) {
+                    closeNotifyConnection();
+                }
+            }
+        }
+    }
+
+    private void closeNotifyConnection() {
+        if (!Objects.isNull(notifyConnection)) {
+            try {
+                notifyConnection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing invalidation connection " + e.getMessage());
+            }
+            notifyConnection = null;
+        }
+    }
+
+    /**
+     * Encodes invalidations into as few payloads as possible, each shorter than MAX_PAYLOAD_LENGTH
+     *
+     * @param nodeId     ID of the sending node
+     * @param productIds Invalidated product IDs
+     * @param userNames  Invalidated usernames
+     * @return payloads, empty if there is nothing to send
+     */
+    static List<String> encode(String nodeId, List<Integer> productIds, List<String> userNames) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder products = new StringBuilder();
+        StringBuilder users = new StringBuilder();
+        for (Integer productId : productIds) {
+            appendValue(nodeId, payloads, products, users, products, String.valueOf(productId));
+        }
+        for (String userName : userNames) {
+            appendValue(nodeId, payloads, products, users, users, userName);
+        }
+        if (products.length() > 0 || users.length() > 0) {
+            payloads.add(payload(nodeId, products, users));
+        }
+        return payloads;
+    }
+
+    private static void appendValue(String nodeId, List<String> payloads, StringBuilder products,
+                                    StringBuilder users, StringBuilder target, String value) {
+        if (nodeId.length() + products.length() + users.length() + value.length() + 8 > MAX_PAYLOAD_LENGTH) {
+            payloads.add(payload(nodeId, products, users));
+            products.setLength(0);
+            users.setLength(0);
+        }
+        if (target.length() > 0) {
+            target.append(',');
+        }
+        target.append(value);
+    }
+
+    private static String payload(String nodeId, StringBuilder products, StringBuilder users) {
+        return nodeId + ";p=" + products + ";u=" + users;
+    }
+
+    /**
+     * Decodes payload written by encode
+     *
+     * @param payload Notification payload
+     * @return decoded invalidation
+     * @throws IllegalArgumentException If payload is not in the nodeId;p=1,2;u=user1 format
+     */
+    static Invalidation decode(String payload) {
+        String[] parts = Objects.isNull(payload) ? new String[0] : payload.split(";", -1);
+        if (parts.length != 3 || parts[0].isEmpty() || !parts[1].startsWith("p=") || !parts[2].startsWith("u=")) {
+            throw new IllegalArgumentException("Malformed cache invalidation payload: " + payload);
+        }
+        List<Integer> productIds = new ArrayList<>();
+        String products = parts[1].substring("p=".length());
+        if (!products.isEmpty()) {
+            for (String productId : products.split(",", -1)) {
+                // NumberFormatException is an IllegalArgumentException
+                productIds.add(Integer.parseInt(productId));
+            }
+        }
+        List<String> userNames = new ArrayList<>();
+        String users = parts[2].substring("u=".length());
+        if (!users.isEmpty()) {
+            for (String userName : users.split(",", -1)) {
+                if (userName.isEmpty()) {
+                    throw new IllegalArgumentException("Empty username in cache invalidation payload: " + payload);
+                }
+                userNames.add(userName);
+            }
+        }
+        return new Invalidation(parts[0], productIds, userNames);
+    }
+
+    /**
+     * Listens on a dedicated connection, reconnecting after failures.
+     * After a reconnect notifications may have been missed, so the whole cache is cleared.
+     */
+    private void listen() {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection con = DBBase.newDedicatedConnection()) {
+                con.setAutoCommit(true);
+                Statement stmt = con.createStatement();
+                stmt.execute(LISTEN);
+                stmt.close();
+                if (reconnect) {
+                    productCache.clear();
+                }
+                PGConnection pgConnection = con.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(500);
+                    if (!Objects.isNull(notifications)) {
+                        for (PGNotification notification : notifications) {
+                            try {
+                                handle(notification.getParameter());
+                            } catch (RuntimeException e) {
+                                // Keep listening, a dead listener would leave the cache stale for the run
+                                System.err.println("Error handling cache invalidation " + e);
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    System.err.println("Invalidation listener failed, reconnecting " + e.getMessage());
+                    reconnect = true;
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies invalidations of the other nodes. Malformed payloads, e.g. a manual NOTIFY
+     * or another version of the application, are counted and skipped
+     *
+     * @param payload Notification payload
+     */
+    void handle(String payload) {
+        notificationsReceived.increment();
+        Invalidation invalidation;
+        try {
+            invalidation = decode(payload);
+        } catch (IllegalArgumentException e) {
+            malformedNotifications.increment();
+            System.err.println("Skipping cache invalidation " + e.getMessage());
+            return;
+        }
+        if (nodeId.equals(invalidation.nodeId)) {
+            // Own invalidations are already applied locally
+            return;
+        }
+        for (int productId : invalidation.productIds) {
+            productCache.invalidate(productId);
+            remoteProductEvictions.increment();
+        }
+        // No user keyed cache exists yet, user invalidations are only counted
+        remoteUserInvalidations.add(invalidation.userNames.size());
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    public long getMalformedNotifications() {
+        return malformedNotifications.sum();
+    }
+}
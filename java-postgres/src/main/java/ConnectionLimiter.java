@@ -0,0 +1,74 @@
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of clients using a database session at the same time.
+ * With far more clients than pooled connections, clients queue here in FIFO order
+ * instead of timing out in the pool, and the time spent queueing is measured.
+ * Only java.util.concurrent primitives are used, so waiting virtual threads
+ * release their carrier threads.
+ *
+ * @author Abhishek Inamdar
+ */
+public class ConnectionLimiter {
+    private final Semaphore permits;
+    private final int limit;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Creates limiter
+     *
+     * @param limit Maximum number of concurrent sessions
+     */
+    public ConnectionLimiter(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1: " + limit);
+        }
+        this.limit = limit;
+        this.permits = new Semaphore(limit, true);
+    }
+
+    /**
+     * Creates limiter configured with CONNECTION_LIMIT property, defaulting to the pool size
+     *
+     * @return ConnectionLimiter object
+     */
+    public static ConnectionLimiter fromProperties() {
+        return new ConnectionLimiter(DBBase.getIntProperty("CONNECTION_LIMIT",
+                DBBase.getIntProperty("POOL_MAX_SIZE", Utility.MAX_THREADS_TO_RUN)));
+    }
+
+    /**
+     * Waits for a permit, must be followed by release
+     *
+     * @throws SQLException If interrupted while waiting
+     */
+    public void acquire() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection permit",
+                    ConnectionPool.POOL_TIMEOUT_SQL_STATE, e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        acquisitions.increment();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getStats() {
+        long count = acquisitions.sum();
+        return "ConnectionLimiter{limit=" + limit +
+                ", acquisitions=" + count +
+                ", queued=" + permits.getQueueLength() +
+                ", avgWaitMs=" + (count == 0 ? 0.0 : waitNanos.sum() / 1e6 / count) +
+                '}';
+    }
+}
@@ -0,0 +1,377 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded JDBC connection pool.
+ * Every borrowed connection is a separate physical session, handed out as a proxy
+ * whose close() returns the session to the pool instead of closing it.
+ *
+ * @author Abhishek Inamdar
+ */
+public class ConnectionPool {
+    /**
+     * SQL state used when a connection could not be borrowed in time
+     */
+    public static final String POOL_TIMEOUT_SQL_STATE = "08001";
+
+    /**
+     * Factory creating new physical connections
+     */
+    public interface ConnectionFactory {
+        Connection newConnection() throws SQLException;
+    }
+
+    /**
+     * Idle physical connection along with the time it was returned
+     */
+    private static class IdleConnection {
+        private final Connection physical;
+        private final long idleSince;
+
+        private IdleConnection(Connection physical, long idleSince) {
+            this.physical = physical;
+            this.idleSince = idleSince;
+        }
+    }
+
+    /**
+     * Information about a borrowed connection
+     */
+    public static class Lease {
+        private final Connection physical;
+        private final Thread owner;
+        private final long borrowedAt;
+
+        private Lease(Connection physical, Thread owner, long borrowedAt) {
+            this.physical = physical;
+            this.owner = owner;
+            this.borrowedAt = borrowedAt;
+        }
+
+        public Thread getOwner() {
+            return owner;
+        }
+
+        public long getBorrowedAt() {
+            return borrowedAt;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final Map<Connection, Lease> leases = new ConcurrentHashMap<>();
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final Map<Connection, Integer> isolationLevels = new ConcurrentHashMap<>();
+    private final ThreadLocal<Integer> threadLeaseCount = ThreadLocal.withInitial(() -> 0);
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates the pool and opens minSize connections
+     *
+     * @param factory                  Physical connection factory
+     * @param minSize                  Minimum number of connections kept open
+     * @param maxSize                  Maximum number of connections
+     * @param borrowTimeoutMillis      Maximum time to wait for a connection
+     * @param idleTimeoutMillis        Idle time after which connections above minSize are closed
+     * @param validationTimeoutSeconds Timeout of the validation done on borrow
+     * @param statementCacheSize       Number of prepared statements cached per connection, 0 to disable
+     * @throws SQLException If an SQL Error occurs
+     */
+    public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize, long borrowTimeoutMillis,
+                          long idleTimeoutMillis, int validationTimeoutSeconds,
+                          int statementCacheSize) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size, min: " + minSize + ", max: " + maxSize);
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        for (int i = 0; i < minSize; i++) {
+            idle.offerFirst(new IdleConnection(createPhysical(), System.nanoTime()));
+        }
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting at most borrowTimeoutMillis.
+     * The returned connection must be closed to give it back to the pool.
+     *
+     * @return Connection proxy
+     * @throws SQLException If pool is exhausted or an SQL Error occurs
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed", POOL_TIMEOUT_SQL_STATE);
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + "ms waiting for a connection, " + this, POOL_TIMEOUT_SQL_STATE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", POOL_TIMEOUT_SQL_STATE, e);
+        }
+
+        try {
+            Connection physical = null;
+            IdleConnection candidate;
+            while (physical == null && (candidate = idle.pollFirst()) != null) {
+                if (isValid(candidate.physical)) {
+                    physical = candidate.physical;
+                } else {
+                    discard(candidate.physical);
+                }
+            }
+            if (physical == null) {
+                physical = createPhysical();
+            }
+            return lease(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops accepting borrows.
+     * Leased connections are closed once they are returned.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            discard(candidate.physical);
+        }
+    }
+
+    /**
+     * Returns number of leases held by the current thread
+     *
+     * @return number of connections borrowed by the calling thread and not yet returned
+     */
+    public int getLeaseCountOfCurrentThread() {
+        return threadLeaseCount.get();
+    }
+
+    /**
+     * Returns snapshot of current leases
+     *
+     * @return current leases
+     */
+    public Iterable<Lease> getLeases() {
+        return leases.values();
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return leases.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "min=" + minSize +
+                ", max=" + maxSize +
+                ", total=" + getTotalConnections() +
+                ", active=" + getActiveConnections() +
+                ", idle=" + getIdleConnections() +
+                '}';
+    }
+
+    private Connection lease(Connection physical) {
+        Connection proxy = (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new PooledConnectionHandler(physical));
+        leases.put(proxy, new Lease(physical, Thread.currentThread(), System.nanoTime()));
+        threadLeaseCount.set(threadLeaseCount.get() + 1);
+        return proxy;
+    }
+
+    /**
+     * Gives the physical connection back to the pool.
+     * Any open transaction is rolled back so that an aborted transaction (25P02)
+     * does not leak into the next borrower.
+     */
+    private void release(Connection proxy) {
+        Lease lease = leases.remove(proxy);
+        if (Objects.isNull(lease)) {
+            return;
+        }
+        if (lease.owner == Thread.currentThread()) {
+            threadLeaseCount.set(Math.max(0, threadLeaseCount.get() - 1));
+        }
+        Connection physical = lease.physical;
+        try {
+            if (closed || physical.isClosed()) {
+                discard(physical);
+            } else {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                }
+                if (physical.isReadOnly()) {
+                    physical.setReadOnly(false);
+                }
+                idle.offerFirst(new IdleConnection(physical, System.nanoTime()));
+            }
+        } catch (SQLException e) {
+            discard(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isValid(Connection physical) {
+        try {
+            return physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection createPhysical() throws SQLException {
+        Connection physical = factory.newConnection();
+        if (Objects.isNull(physical)) {
+            throw new SQLException("Can not establish the DB connection", POOL_TIMEOUT_SQL_STATE);
+        }
+        totalConnections.incrementAndGet();
+        return physical;
+    }
+
+    private void discard(Connection physical) {
+        totalConnections.decrementAndGet();
+        isolationLevels.remove(physical);
+        StatementCache cache = statementCaches.remove(physical);
+        if (!Objects.isNull(cache)) {
+            cache.close();
+        }
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes connections idle for more than idleTimeoutMillis while keeping at least minSize open
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        // Oldest idle connections are at the tail since returned connections are pushed to the head
+        IdleConnection candidate;
+        while (totalConnections.get() > minSize && (candidate = idle.peekLast()) != null
+                && now - candidate.idleSince > timeoutNanos) {
+            if (idle.removeLastOccurrence(candidate)) {
+                discard(candidate.physical);
+            }
+        }
+    }
+
+    /**
+     * Delegates to the physical connection, except close() which returns it to the pool,
+     * prepareStatement(sql) which is served from the statement cache of the physical connection
+     * and transaction isolation which is cached per physical connection
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+        private volatile boolean returned = false;
+
+        private PooledConnectionHandler(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release((Connection) proxy);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection{" + physical + "}";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if ("setTransactionIsolation".equals(method.getName())) {
+                // Isolation is cached per physical connection so unchanged levels cost no round trip
+                if (!args[0].equals(isolationLevels.get(physical))) {
+                    physical.setTransactionIsolation((Integer) args[0]);
+                    isolationLevels.put(physical, (Integer) args[0]);
+                }
+                return null;
+            }
+            if ("getTransactionIsolation".equals(method.getName())) {
+                Integer level = isolationLevels.get(physical);
+                if (Objects.isNull(level)) {
+                    level = physical.getTransactionIsolation();
+                    isolationLevels.put(physical, level);
+                }
+                return level;
+            }
+            if (statementCacheSize > 0 && "prepareStatement".equals(method.getName()) && args.length == 1) {
+                return statementCaches.computeIfAbsent(physical,
+                        con -> new StatementCache(con, statementCacheSize)).prepare((String) args[0]);
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
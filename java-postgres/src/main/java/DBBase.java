@@ -1,14 +1,16 @@
-import java.io.File;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * This class establishes DB connection based on database properties
@@ -22,9 +24,9 @@ public class DBBase {
     private static final String DB_PROPERTY_FILE = "db.properties";
 
     /**
-     * Connection object
+     * Connection pool shared by all the threads
      */
-    private static Connection con = null;
+    private static ConnectionPool pool = null;
 
     /**
      * DB properties (URL, USERNAME, PASSWORD)
@@ -32,91 +34,184 @@ public class DBBase {
     private static String url = null, username = null, password = null;
 
     /**
-     * Returns Connection
+     * All the properties read from the properties file.
+     * Filled once, then only read; the volatile flag publishes it to the other threads
+     */
+    private static final Map<String, String> properties = new HashMap<>();
+    private static volatile boolean propertiesLoaded = false;
+
+    /**
+     * Borrows a Connection from the pool.
+     * Every call returns a separate physical session which must be closed
+     * to return it to the pool.
      *
      * @return Connection object
+     * @throws SQLException If pool is exhausted or an SQL Error occurs
      */
     public static Connection getConnection() throws SQLException {
-        if (!Objects.isNull(con) && !con.isClosed()) {
-            return con;
-        }
+        return getPool().borrow();
+    }
+
+    /**
+     * Opens a physical connection outside of the pool, for long lived sessions
+     * such as LISTEN which would otherwise hold a pooled connection forever.
+     * Caller must close it.
+     *
+     * @return Connection object
+     * @throws SQLException If an SQL Error occurs
+     */
+    public static Connection newDedicatedConnection() throws SQLException {
         return establishConnection();
     }
 
+    /**
+     * Returns the connection pool, creating it on first use.
+     * Pool is configured with POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_BORROW_TIMEOUT_MS,
+     * POOL_IDLE_TIMEOUT_MS, POOL_VALIDATION_TIMEOUT_SECONDS and STATEMENT_CACHE_SIZE properties.
+     * Pooled connections are instrumented unless QUERY_INSTRUMENTATION is false
+     *
+     * @return ConnectionPool object
+     * @throws SQLException If an SQL Error occurs
+     */
+    public static synchronized ConnectionPool getPool() throws SQLException {
+        if (Objects.isNull(pool)) {
+            ConnectionPool.ConnectionFactory factory = QueryInstrumentation.isEnabled()
+                    ? () -> QueryInstrumentation.instrument(establishConnection()) : DBBase::establishConnection;
+            pool = new ConnectionPool(factory,
+                    getIntProperty("POOL_MIN_SIZE", 1),
+                    getIntProperty("POOL_MAX_SIZE", Utility.MAX_THREADS_TO_RUN),
+                    getLongProperty("POOL_BORROW_TIMEOUT_MS", 30_000L),
+                    getLongProperty("POOL_IDLE_TIMEOUT_MS", 60_000L),
+                    getIntProperty("POOL_VALIDATION_TIMEOUT_SECONDS", 2),
+                    getIntProperty("STATEMENT_CACHE_SIZE", 32));
+        }
+        return pool;
+    }
+
+    /**
+     * Closes the connection pool
+     */
+    public static synchronized void closePool() {
+        if (!Objects.isNull(pool)) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    /**
+     * Returns value of the given property.
+     * System property with the same name takes precedence over the properties file
+     *
+     * @param property     Property name
+     * @param defaultValue Value returned if property is not set
+     * @return Property value
+     */
+    public static String getProperty(String property, String defaultValue) {
+        String value = System.getProperty(property);
+        if (Objects.isNull(value)) {
+            loadProperties();
+            value = properties.get(property);
+        }
+        return Objects.isNull(value) || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public static int getIntProperty(String property, int defaultValue) {
+        return Integer.parseInt(getProperty(property, String.valueOf(defaultValue)));
+    }
+
+    public static long getLongProperty(String property, long defaultValue) {
+        return Long.parseLong(getProperty(property, String.valueOf(defaultValue)));
+    }
+
     /**
      * Establishes connection based on database properties
      *
      * @throws SQLException If an SQL Error occurs
      */
     private static Connection establishConnection() throws SQLException {
+        loadProperties();
+        Connection con = null;
         if (url != null && username != null) {
             con = DriverManager.getConnection(url, username, password);
-        } else {
+        }
+        if (Objects.isNull(con)) {
+            throw new SQLException("Can not establish the DB connection, check " + DB_PROPERTY_FILE);
+        }
+
+        //Setting isolation level to Serializable
+        con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        return con;
+    }
+
+    /**
+     * Reads the properties file once, later calls do not lock
+     */
+    private static void loadProperties() {
+        if (!propertiesLoaded) {
+            readProperties();
+        }
+    }
+
+    private static synchronized void readProperties() {
+        if (propertiesLoaded) {
+            return;
+        }
+        try {
             // Read the properties file
             // it should contain following properties
             // URL, USERNAME, PASSWORD
-            File dbProperties = null;
+            List<String> lines = null;
             try {
                 DBBase base = new DBBase();
-                dbProperties = base.getFileFromResource(DB_PROPERTY_FILE);
-            } catch (URISyntaxException e) {
-                System.err.println("Error loading db.properties file" + e.getMessage());
+                lines = base.readResource(DB_PROPERTY_FILE);
+            } catch (IOException e) {
+                System.err.println("Error reading db.properties file");
             }
 
-
-            if (!Objects.isNull(dbProperties)) {
-                try {
-                    List<String> lines = Files.readAllLines(dbProperties.toPath(),
-                            StandardCharsets.UTF_8);
-                    for (String line : lines) {
-                        String[] parts = line.split("==");
-                        String property = parts[0];
-                        String value = null;
-                        if (parts.length > 1) {
-                            value = parts[1];
-                        }
-                        switch (property) {
-                            case "URL":
-                                url = value;
-                                break;
-                            case "USERNAME":
-                                username = value;
-                                break;
-                            case "PASSWORD":
-                                password = value;
-                                break;
-                            default:
-                                break;
-                        }
+            if (!Objects.isNull(lines)) {
+                for (String line : lines) {
+                    String[] parts = line.split("==");
+                    String property = parts[0];
+                    String value = null;
+                    if (parts.length > 1) {
+                        value = parts[1];
+                    }
+                    properties.put(property, value);
+                    switch (property) {
+                        case "URL":
+                            url = value;
+                            break;
+                        case "USERNAME":
+                            username = value;
+                            break;
+                        case "PASSWORD":
+                            password = value;
+                            break;
+                        default:
+                            break;
                     }
-                } catch (IOException e) {
-                    System.err.println("Error reading db.properties file");
                 }
             }
-            if (url != null && username != null) {
-                con = DriverManager.getConnection(url, username, password);
-            }
+        } finally {
+            propertiesLoaded = true;
         }
-
-        //Setting isolation level to Serializable
-        con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
-        return con;
     }
 
     /**
-     * Utility method to read file from the resources
+     * Utility method to read file from the resources.
+     * Read as a stream, so it also works when the resources are packaged in a jar
      *
      * @param fileName name of the file
-     * @return File object
-     * @throws URISyntaxException In case of File URI Syntax error
+     * @return lines of the file
+     * @throws IOException If file can not be read
      */
-    private File getFileFromResource(String fileName) throws URISyntaxException {
-        ClassLoader classLoader = getClass().getClassLoader();
-        URL resource = classLoader.getResource(fileName);
-        if (resource == null) {
+    private List<String> readResource(String fileName) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(fileName);
+        if (in == null) {
             throw new IllegalArgumentException("file not found! " + fileName);
-        } else {
-            return new File(resource.toURI());
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
         }
     }
 }
@@ -19,8 +19,13 @@ public class DBInitialize extends Utility {
      * Method to perform setup and data initialization
      */
     public void setupAndInitializeDB() {
+        ProductCache productCache = ProductCache.getDefault();
+        if (productCache != null) {
+            productCache.clear();
+        }
         setupDatabase();
         initializeDatabase();
+        createIndexes();
     }
 
     /**
@@ -36,9 +41,34 @@ public class DBInitialize extends Utility {
     }
 
     /**
-     * Method to add random data
+     * Creates secondary indexes once the data is loaded, which is faster
+     * than maintaining them during the load
+     */
+    private void createIndexes() {
+        try {
+            DBSetup dbSetup = new DBSetup();
+            dbSetup.createIndexes();
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Method to add random data.
+     * INIT_MODE property selects between COPY based bulk load ("copy") and
+     * row by row inserts through DBOperation ("row")
      */
     private void initializeDatabase() {
+        if ("copy".equalsIgnoreCase(DBBase.getProperty("INIT_MODE", "row"))) {
+            try {
+                BulkLoader loader = new BulkLoader();
+                loader.load();
+            } catch (SQLException e) {
+                System.err.println("Something went wrong while bulk loading Data");
+                System.err.println(e.getSQLState() + e.getMessage());
+            }
+            return;
+        }
         addProducts();
         addUsers();
         postReviews();
@@ -49,20 +79,16 @@ public class DBInitialize extends Utility {
      * Method to add random data into Products Table
      */
     private void addProducts() {
-        Connection con;
         DBOperation operation = new DBOperation();
-        Fairy fairy = Fairy.create();
 
         String productName;
         String productDesc;
         double productPrice;
         int productStock;
         for (int i = 1; i <= NUM_PRODUCTS; ) {
-            try {
-                con = DBBase.getConnection();
-                TextProducer text = fairy.textProducer();
-                productName = text.randomString(15);
-                productDesc = text.randomString(50);
+            try (Connection con = DBBase.getConnection()) {
+                productName = SyntheticData.randomString(15);
+                productDesc = SyntheticData.randomString(50);
                 productPrice = doubleBetween(MIN_PRODUCT_PRICE, MAX_PRODUCT_PRICE);
                 productStock = intBetween(MIN_PRODUCT_STOCK, MAX_PRODUCT_STOCK);
                 operation.addProduct(con, productName, productDesc, productPrice, productStock);
@@ -78,16 +104,14 @@ public class DBInitialize extends Utility {
      * Method to add random data into Users Table
      */
     private void addUsers() {
-        Connection con;
         DBOperation operation = new DBOperation();
-        Fairy fairy = Fairy.create();
+        Fairy fairy = SyntheticData.fairy();
         String userName;
         String password;
         String firstName;
         String lastName;
         for (int i = 1; i <= NUM_USERS; ) {
-            try {
-                con = DBBase.getConnection();
+            try (Connection con = DBBase.getConnection()) {
                 Person person = fairy.person();
                 userName = USER_NAME_PREFIX + i;
                 password = PASSWORD_PREFIX + i;
@@ -106,17 +130,15 @@ public class DBInitialize extends Utility {
      * Method to add random data into Reviews Table
      */
     private void postReviews() {
-        Connection con;
         DBOperation operation = new DBOperation();
-        Fairy fairy = Fairy.create();
+        Fairy fairy = SyntheticData.fairy();
         String userName;
         String password;
         int productId;
         double rating;
         String reviewText;
         for (int i = 1; i <= NUM_REVIEWS; ) {
-            try {
-                con = DBBase.getConnection();
+            try (Connection con = DBBase.getConnection()) {
                 TextProducer text = fairy.textProducer();
                 int userId = intBetween(1, NUM_USERS);
                 userName = USER_NAME_PREFIX + userId;
@@ -140,15 +162,13 @@ public class DBInitialize extends Utility {
      * Method to add random data into Orders Table
      */
     private void submitOrders() {
-        Connection con;
         DBOperation operation = new DBOperation();
         String userName;
         String password;
         LocalDateTime orderDate;
         Map<Integer, Integer> productQuantities;
         for (int i = 1; i <= NUM_ORDERS; i++) {
-            try {
-                con = DBBase.getConnection();
+            try (Connection con = DBBase.getConnection()) {
                 int userId = intBetween(1, NUM_USERS);
                 userName = USER_NAME_PREFIX + userId;
                 password = PASSWORD_PREFIX + userId;
@@ -2,6 +2,7 @@ import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 
 /**
  * Interface containing all the DB operation functions
@@ -9,6 +10,116 @@ import java.util.Objects;
  * @author Abhishek Inamdar
  */
 public class DBOperation {
+    /**
+     * SQL statements. Pooled connections serve these from the per connection StatementCache
+     */
+    static final String INSERT_USER =
+            "INSERT INTO USERS(USER_NAME, PASSWORD, FIRST_NAME, LAST_NAME) " +
+                    " VALUES (?, ?, ?, ?)";
+    static final String SELECT_AUTHORIZED_USER =
+            "SELECT USER_NAME FROM USERS WHERE USER_NAME = ? AND PASSWORD = ? ";
+    static final String INSERT_AUTHORIZED_ORDER =
+            "INSERT INTO ORDERS(USER_NAME, ORDER_DATE) " +
+                    " SELECT USER_NAME, ? FROM USERS WHERE USER_NAME = ? AND PASSWORD = ? " +
+                    " RETURNING ORDER_ID";
+    // Rows are locked in ascending PRODUCT_ID order before the update,
+    // so concurrent orders always acquire product locks in the same order
+    static final String UPDATE_PRODUCTS_STOCK_BATCH =
+            "WITH LOCKED AS (SELECT PRODUCT_ID FROM PRODUCTS WHERE PRODUCT_ID = ANY(?) " +
+                    " ORDER BY PRODUCT_ID FOR NO KEY UPDATE) " +
+                    " UPDATE PRODUCTS P SET STOCK = P.STOCK - U.QUANTITY " +
+                    " FROM LOCKED L, unnest(?::int[], ?::int[]) AS U(PRODUCT_ID, QUANTITY) " +
+                    " WHERE P.PRODUCT_ID = L.PRODUCT_ID AND P.PRODUCT_ID = U.PRODUCT_ID";
+    static final String INSERT_ORDER_DETAILS_BATCH =
+            "INSERT INTO ORDER_DETAILS(ORDER_ID, PRODUCT_ID, QUANTITY) " +
+                    " SELECT ?, PRODUCT_ID, QUANTITY FROM unnest(?::int[], ?::int[]) AS D(PRODUCT_ID, QUANTITY)";
+    // Partitioned ORDER_DETAILS carries the partition key, bound as the last parameter
+    static final String INSERT_PARTITIONED_ORDER_DETAILS_BATCH =
+            "INSERT INTO ORDER_DETAILS(ORDER_ID, PRODUCT_ID, QUANTITY, ORDER_DATE) " +
+                    " SELECT ?, D.PRODUCT_ID, D.QUANTITY, O.ORDER_DATE " +
+                    " FROM unnest(?::int[], ?::int[]) AS D(PRODUCT_ID, QUANTITY), " +
+                    " (SELECT CAST(? AS TIMESTAMP) AS ORDER_DATE) O";
+    static final String INSERT_REVIEW =
+            "INSERT INTO REVIEWS(USER_NAME, PRODUCT_ID, " +
+                    " REVIEW_TEXT, RATING, REVIEW_DATE) VALUES (?, ?, ?, ?, ?) ";
+    static final String INSERT_PRODUCT =
+            "INSERT INTO PRODUCTS(NAME, DESCRIPTION, PRICE, STOCK) " +
+                    " VALUES (?, ?, ?, ?) RETURNING PRODUCT_ID ";
+    static final String UPDATE_PRODUCT_STOCK_INCREMENT =
+            "UPDATE PRODUCTS SET STOCK = STOCK + ? WHERE PRODUCT_ID = ? ";
+    static final String SELECT_PRODUCT =
+            "SELECT PRODUCT_ID, NAME, DESCRIPTION, PRICE, STOCK FROM PRODUCTS WHERE PRODUCT_ID = ? ";
+    static final String SELECT_PRODUCT_REVIEWS =
+            "SELECT PRODUCT_ID, USER_NAME, REVIEW_TEXT, RATING, REVIEW_DATE FROM REVIEWS WHERE PRODUCT_ID = ? ";
+    static final String SELECT_PRODUCT_WITH_REVIEWS =
+            "SELECT P.PRODUCT_ID, P.NAME, P.DESCRIPTION, P.PRICE, " +
+                    " R.USER_NAME, R.REVIEW_TEXT, R.RATING, R.REVIEW_DATE " +
+                    " FROM PRODUCTS P LEFT JOIN REVIEWS R ON R.PRODUCT_ID = P.PRODUCT_ID " +
+                    " WHERE P.PRODUCT_ID = ? ";
+    static final String UPSERT_USER_RATING_SUMMARY =
+            "INSERT INTO USER_RATING_SUMMARY(USER_NAME, REVIEW_COUNT, RATING_SUM) " +
+                    " VALUES (?, 1, ROUND(CAST(? AS NUMERIC), 2)) " +
+                    " ON CONFLICT (USER_NAME) DO UPDATE SET " +
+                    " REVIEW_COUNT = USER_RATING_SUMMARY.REVIEW_COUNT + 1, " +
+                    " RATING_SUM = USER_RATING_SUMMARY.RATING_SUM + EXCLUDED.RATING_SUM ";
+    static final String UPSERT_PRODUCT_RATING_SUMMARY =
+            "INSERT INTO PRODUCT_RATING_SUMMARY(PRODUCT_ID, REVIEW_COUNT, RATING_SUM) " +
+                    " VALUES (?, 1, ROUND(CAST(? AS NUMERIC), 2)) " +
+                    " ON CONFLICT (PRODUCT_ID) DO UPDATE SET " +
+                    " REVIEW_COUNT = PRODUCT_RATING_SUMMARY.REVIEW_COUNT + 1, " +
+                    " RATING_SUM = PRODUCT_RATING_SUMMARY.RATING_SUM + EXCLUDED.RATING_SUM ";
+    static final String SELECT_AVERAGE_USER_RATING =
+            "SELECT RATING_SUM / REVIEW_COUNT AS AVG_RATING FROM USER_RATING_SUMMARY WHERE USER_NAME = ? ";
+    static final String SELECT_AVERAGE_PRODUCT_RATING =
+            "SELECT RATING_SUM / REVIEW_COUNT AS AVG_RATING FROM PRODUCT_RATING_SUMMARY WHERE PRODUCT_ID = ? ";
+
+    /**
+     * Runs DB operations in transactions and retries serialization failures
+     */
+    private final TransactionExecutor executor;
+
+    /**
+     * true to read product and its reviews with a single LEFT JOIN query,
+     * false to read them with two queries
+     */
+    private final boolean joinProductReviews;
+
+    /**
+     * Cache in front of getProductAndReviews, null if disabled
+     */
+    private final ProductCache productCache;
+
+    /**
+     * Sends invalidations to the other nodes, null if disabled
+     */
+    private final CacheInvalidationBus invalidationBus;
+
+    /**
+     * true if ORDER_DETAILS is partitioned and carries ORDER_DATE
+     */
+    private final boolean partitionedOrders;
+
+    /**
+     * Creates DBOperation configured with PRODUCT_REVIEWS_QUERY property ("join" or "two-query"),
+     * the default ProductCache, the default CacheInvalidationBus and the orders partitioning.
+     * Looking these up takes shared locks, so create it once per run; it keeps no per call state
+     * and is shared by all the workers
+     */
+    public DBOperation() {
+        this(TransactionExecutor.getDefault(),
+                "join".equalsIgnoreCase(DBBase.getProperty("PRODUCT_REVIEWS_QUERY", "two-query")),
+                ProductCache.getDefault(), CacheInvalidationBus.getDefault(), PartitionManager.isEnabled());
+    }
+
+    public DBOperation(TransactionExecutor executor, boolean joinProductReviews, ProductCache productCache,
+                       CacheInvalidationBus invalidationBus, boolean partitionedOrders) {
+        this.executor = executor;
+        this.joinProductReviews = joinProductReviews;
+        this.productCache = productCache;
+        this.invalidationBus = invalidationBus;
+        this.partitionedOrders = partitionedOrders;
+    }
+
     /**
      * Creates account for new user
      *
@@ -21,29 +132,27 @@ public class DBOperation {
      */
     public void createAccount(Connection con, String userName, String password,
                               String firstName, String lastName) throws SQLException {
-        con.setAutoCommit(false);
-        PreparedStatement stmt = null;
-        try {
-            stmt = con.prepareStatement("INSERT INTO USERS(USER_NAME, PASSWORD, FIRST_NAME, LAST_NAME) " +
-                    " VALUES (?, ?, ?, ?)");
-            stmt.setString(1, userName);
-            stmt.setString(2, password);
-            stmt.setString(3, firstName);
-            stmt.setString(4, lastName);
-            stmt.execute();
-            con.commit();
-        } catch (SQLException e) {
-            con.rollback();
-            throw e;
-        } finally {
-            if (!Objects.isNull(stmt)) {
-                stmt.close();
+        executor.execute(Utility.operationIndex(Utility.CREATE_ACCOUNT), con, c -> {
+            PreparedStatement stmt = null;
+            try {
+                stmt = c.prepareStatement(INSERT_USER);
+                stmt.setString(1, userName);
+                stmt.setString(2, password);
+                stmt.setString(3, firstName);
+                stmt.setString(4, lastName);
+                stmt.execute();
+                return null;
+            } finally {
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
             }
-        }
+        });
     }
 
     /**
-     * Checks if the given user is authorized or not
+     * Checks if the given user is authorized or not.
+     * Runs within the transaction of the caller
      *
      * @param con      Connection
      * @param userName Username
@@ -52,19 +161,14 @@ public class DBOperation {
      * @throws SQLException If SQL error occurs
      */
     private boolean isUserAuthorized(Connection con, String userName, String password) throws SQLException {
-        con.setAutoCommit(false);
         PreparedStatement stmt = null;
         ResultSet rs = null;
         try {
-            stmt = con.prepareStatement("SELECT USER_NAME FROM USERS WHERE USER_NAME = ? AND PASSWORD = ? ");
+            stmt = con.prepareStatement(SELECT_AUTHORIZED_USER);
             stmt.setString(1, userName);
             stmt.setString(2, password);
             rs = stmt.executeQuery();
-            con.commit();
             return rs.next() && userName.equals(rs.getString(1));
-        } catch (SQLException e) {
-            con.rollback();
-            throw e;
         } finally {
             if (!Objects.isNull(rs)) {
                 rs.close();
@@ -78,6 +182,7 @@ public class DBOperation {
     /**
      * Creates Order with specified products and quantities
      * Fails if sufficient quantities are not available
+     * All the products of the order are updated and inserted with one statement per table
      *
      * @param con               Connection
      * @param date              Date of the order
@@ -88,62 +193,72 @@ public class DBOperation {
      */
     public void submitOrder(Connection con, LocalDateTime date, String username, String password,
                             Map<Integer, Integer> productQuantities) throws SQLException {
-        con.setAutoCommit(false);
-        PreparedStatement stmtUpdateProducts = null;
-        PreparedStatement stmtCreateOrders = null;
-        PreparedStatement stmtCreateOrderDetails = null;
-        ResultSet rsCreateOrders = null;
-        try {
-            if (isUserAuthorized(con, username, password)) {
-                stmtUpdateProducts = con.prepareStatement("UPDATE PRODUCTS SET STOCK = STOCK - ? " +
-                        " WHERE PRODUCT_ID = ?");
-                stmtCreateOrders = con.prepareStatement("INSERT INTO ORDERS(USER_NAME, ORDER_DATE) " +
-                        " VALUES (?, ?) RETURNING ORDER_ID");
-                stmtCreateOrderDetails = con.prepareStatement("INSERT INTO ORDER_DETAILS(ORDER_ID, " +
-                        " PRODUCT_ID, QUANTITY) VALUES (?, ?, ?)");
-
-                stmtCreateOrders.setString(1, username);
-                stmtCreateOrders.setTimestamp(2, Timestamp.valueOf(date));
+        executor.execute(Utility.operationIndex(Utility.SUBMIT_ORDER), con, c -> {
+            PreparedStatement stmtCreateOrders = null;
+            PreparedStatement stmtUpdateProducts = null;
+            PreparedStatement stmtCreateOrderDetails = null;
+            ResultSet rsCreateOrders = null;
+            Array productIdArray = null;
+            Array quantityArray = null;
+            try {
+                //Order is only created if user is authorized
+                stmtCreateOrders = c.prepareStatement(INSERT_AUTHORIZED_ORDER);
+                stmtCreateOrders.setTimestamp(1, Timestamp.valueOf(date));
+                stmtCreateOrders.setString(2, username);
+                stmtCreateOrders.setString(3, password);
                 rsCreateOrders = stmtCreateOrders.executeQuery();
                 int orderId = 0;
                 if (rsCreateOrders.next()) {
                     orderId = rsCreateOrders.getInt("ORDER_ID");
                 }
-                if (orderId != 0) {
-                    for (Integer productId : productQuantities.keySet()) {
-                        Integer quantity = productQuantities.get(productId);
-
-                        //Update Products table
-                        stmtUpdateProducts.setInt(1, quantity);
-                        stmtUpdateProducts.setInt(2, productId);
-                        stmtUpdateProducts.execute();
-
-                        //Insert Order Details
-                        stmtCreateOrderDetails.setInt(1, orderId);
-                        stmtCreateOrderDetails.setInt(2, productId);
-                        stmtCreateOrderDetails.setInt(3, quantity);
-                        stmtCreateOrderDetails.execute();
+                if (orderId != 0 && !productQuantities.isEmpty()) {
+                    //Products are sent in ascending product ID order, which is also the lock order
+                    Map<Integer, Integer> sortedQuantities = new TreeMap<>(productQuantities);
+                    productIdArray = c.createArrayOf("integer", sortedQuantities.keySet().toArray());
+                    quantityArray = c.createArrayOf("integer", sortedQuantities.values().toArray());
+
+                    //Update Products table
+                    stmtUpdateProducts = c.prepareStatement(UPDATE_PRODUCTS_STOCK_BATCH);
+                    stmtUpdateProducts.setArray(1, productIdArray);
+                    stmtUpdateProducts.setArray(2, productIdArray);
+                    stmtUpdateProducts.setArray(3, quantityArray);
+                    stmtUpdateProducts.execute();
+
+                    //Insert Order Details
+                    stmtCreateOrderDetails = c.prepareStatement(partitionedOrders
+                            ? INSERT_PARTITIONED_ORDER_DETAILS_BATCH : INSERT_ORDER_DETAILS_BATCH);
+                    stmtCreateOrderDetails.setInt(1, orderId);
+                    stmtCreateOrderDetails.setArray(2, productIdArray);
+                    stmtCreateOrderDetails.setArray(3, quantityArray);
+                    if (partitionedOrders) {
+                        stmtCreateOrderDetails.setTimestamp(4, Timestamp.valueOf(date));
                     }
+                    stmtCreateOrderDetails.execute();
+                }
+                return null;
+            } finally {
+                if (!Objects.isNull(rsCreateOrders)) {
+                    rsCreateOrders.close();
+                }
+                if (!Objects.isNull(stmtCreateOrders)) {
+                    stmtCreateOrders.close();
+                }
+                if (!Objects.isNull(stmtCreateOrderDetails)) {
+                    stmtCreateOrderDetails.close();
+                }
+                if (!Objects.isNull(stmtUpdateProducts)) {
+                    stmtUpdateProducts.close();
+                }
+                if (!Objects.isNull(productIdArray)) {
+                    productIdArray.free();
+                }
+                if (!Objects.isNull(quantityArray)) {
+                    quantityArray.free();
                 }
-                con.commit();
-            }
-        } catch (SQLException e) {
-            con.rollback();
-            throw e;
-        } finally {
-            if (!Objects.isNull(rsCreateOrders)) {
-                rsCreateOrders.close();
-            }
-            if (!Objects.isNull(stmtCreateOrders)) {
-                stmtCreateOrders.close();
-            }
-            if (!Objects.isNull(stmtCreateOrderDetails)) {
-                stmtCreateOrderDetails.close();
-            }
-            if (!Objects.isNull(stmtUpdateProducts)) {
-                stmtUpdateProducts.close();
             }
-        }
+        });
+        invalidateProducts(productQuantities.keySet());
+        invalidateUser(username);
     }
 
     /**
@@ -159,29 +274,47 @@ public class DBOperation {
      */
     public void postReview(Connection con, String userName, String password, int productId,
                            double rating, String reviewText) throws SQLException {
-        con.setAutoCommit(false);
-        PreparedStatement stmt = null;
-        try {
-            if (isUserAuthorized(con, userName, password)) {
-                stmt = con.prepareStatement("INSERT INTO REVIEWS(USER_NAME, PRODUCT_ID, " +
-                        " REVIEW_TEXT, RATING, REVIEW_DATE) VALUES (?, ?, ?, ?, ?) ");
-                stmt.setString(1, userName);
-                stmt.setInt(2, productId);
-                stmt.setString(3, reviewText);
-                stmt.setDouble(4, rating);
-                stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+        executor.execute(Utility.operationIndex(Utility.POST_REVIEW), con, c -> {
+            PreparedStatement stmt = null;
+            PreparedStatement stmtUserSummary = null;
+            PreparedStatement stmtProductSummary = null;
+            try {
+                if (isUserAuthorized(c, userName, password)) {
+                    stmt = c.prepareStatement(INSERT_REVIEW);
+                    stmt.setString(1, userName);
+                    stmt.setInt(2, productId);
+                    stmt.setString(3, reviewText);
+                    stmt.setDouble(4, rating);
+                    stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
 
-                stmt.execute();
-                con.commit();
-            }
-        } catch (SQLException e) {
-            con.rollback();
-            throw e;
-        } finally {
-            if (!Objects.isNull(stmt)) {
-                stmt.close();
+                    stmt.execute();
+
+                    // Rating summaries are maintained in the same transaction as the review
+                    stmtUserSummary = c.prepareStatement(UPSERT_USER_RATING_SUMMARY);
+                    stmtUserSummary.setString(1, userName);
+                    stmtUserSummary.setDouble(2, rating);
+                    stmtUserSummary.execute();
+
+                    stmtProductSummary = c.prepareStatement(UPSERT_PRODUCT_RATING_SUMMARY);
+                    stmtProductSummary.setInt(1, productId);
+                    stmtProductSummary.setDouble(2, rating);
+                    stmtProductSummary.execute();
+                }
+                return null;
+            } finally {
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
+                if (!Objects.isNull(stmtUserSummary)) {
+                    stmtUserSummary.close();
+                }
+                if (!Objects.isNull(stmtProductSummary)) {
+                    stmtProductSummary.close();
+                }
             }
-        }
+        });
+        invalidateProduct(productId);
+        invalidateUser(userName);
     }
 
     /**
@@ -197,34 +330,32 @@ public class DBOperation {
      */
     public int addProduct(Connection con, String name, String description, double price,
                           int initialStock) throws SQLException {
-        con.setAutoCommit(false);
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
-        int productId = 0;
-        try {
-            stmt = con.prepareStatement("INSERT INTO PRODUCTS(NAME, DESCRIPTION, PRICE, STOCK) " +
-                    " VALUES (?, ?, ?, ?) RETURNING PRODUCT_ID ");
-            stmt.setString(1, name);
-            stmt.setString(2, description);
-            stmt.setDouble(3, price);
-            stmt.setInt(4, initialStock);
-            rs = stmt.executeQuery();
-            if (rs.next()) {
-                productId = rs.getInt("PRODUCT_ID");
-            }
-            con.commit();
-            return productId;
-        } catch (SQLException e) {
-            con.rollback();
-            throw e;
-        } finally {
-            if (!Objects.isNull(rs)) {
-                rs.close();
-            }
-            if (!Objects.isNull(stmt)) {
-                stmt.close();
+        int productId = executor.execute(Utility.operationIndex(Utility.ADD_PRODUCT), con, c -> {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+            int newProductId = 0;
+            try {
+                stmt = c.prepareStatement(INSERT_PRODUCT);
+                stmt.setString(1, name);
+                stmt.setString(2, description);
+                stmt.setDouble(3, price);
+                stmt.setInt(4, initialStock);
+                rs = stmt.executeQuery();
+                if (rs.next()) {
+                    newProductId = rs.getInt("PRODUCT_ID");
+                }
+                return newProductId;
+            } finally {
+                if (!Objects.isNull(rs)) {
+                    rs.close();
+                }
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
             }
-        }
+        });
+        invalidateProduct(productId);
+        return productId;
     }
 
     /**
@@ -237,22 +368,21 @@ public class DBOperation {
      */
     public void updateStockLevel(Connection con, int productId, int itemCountToAdd) throws SQLException {
         assert itemCountToAdd > 0;
-        con.setAutoCommit(false);
-        PreparedStatement stmt = null;
-        try {
-            stmt = con.prepareStatement("UPDATE PRODUCTS SET STOCK = STOCK + ? WHERE PRODUCT_ID = ? ");
-            stmt.setInt(1, itemCountToAdd);
-            stmt.setInt(2, productId);
-            stmt.execute();
-            con.commit();
-        } catch (SQLException e) {
-            con.rollback();
-            throw e;
-        } finally {
-            if (!Objects.isNull(stmt)) {
-                stmt.close();
+        executor.execute(Utility.operationIndex(Utility.UPDATE_STOCK_LEVEL), con, c -> {
+            PreparedStatement stmt = null;
+            try {
+                stmt = c.prepareStatement(UPDATE_PRODUCT_STOCK_INCREMENT);
+                stmt.setInt(1, itemCountToAdd);
+                stmt.setInt(2, productId);
+                stmt.execute();
+                return null;
+            } finally {
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
             }
-        }
+        });
+        invalidateProduct(productId);
     }
 
     /**
@@ -264,20 +394,62 @@ public class DBOperation {
      * @throws SQLException If SQL error occurs
      */
     public ProductInformation getProductAndReviews(Connection con, int productId) throws SQLException {
-        con.setAutoCommit(false);
+        if (!Objects.isNull(productCache)) {
+            return productCache.get(productId, id -> loadProductAndReviews(con, id));
+        }
+        return loadProductAndReviews(con, productId);
+    }
+
+    private ProductInformation loadProductAndReviews(Connection con, int productId) throws SQLException {
+        return executor.execute(Utility.operationIndex(Utility.GET_PRODUCT_REVIEWS), con,
+                c -> joinProductReviews ? readProductWithReviews(c, productId) : readProductAndReviews(c, productId));
+    }
+
+    /**
+     * Removes changed products from the local cache and publishes them to the other nodes,
+     * called once the change is committed
+     *
+     * @param productIds IDs of the changed products
+     */
+    private void invalidateProducts(Iterable<Integer> productIds) {
+        for (Integer productId : productIds) {
+            invalidateProduct(productId);
+        }
+    }
+
+    private void invalidateProduct(int productId) {
+        if (!Objects.isNull(productCache)) {
+            productCache.invalidate(productId);
+        }
+        if (!Objects.isNull(invalidationBus)) {
+            invalidationBus.publishProduct(productId);
+        }
+    }
+
+    private void invalidateUser(String userName) {
+        if (!Objects.isNull(invalidationBus)) {
+            invalidationBus.publishUser(userName);
+        }
+    }
+
+    /**
+     * Reads product and then its reviews with two queries.
+     * Reviews are only read if the product exists
+     *
+     * @param con       Connection
+     * @param productId Product ID
+     * @return Product information with all product reviews
+     * @throws SQLException If SQL error occurs
+     */
+    private ProductInformation readProductAndReviews(Connection con, int productId) throws SQLException {
         PreparedStatement stmtReadProduct = null;
         PreparedStatement stmtReadReviews = null;
         ResultSet rsReadProduct = null;
         ResultSet rsReadReviews = null;
         try {
-            stmtReadProduct = con.prepareStatement("SELECT PRODUCT_ID, NAME, DESCRIPTION, PRICE, STOCK FROM PRODUCTS WHERE PRODUCT_ID = ? ");
+            stmtReadProduct = con.prepareStatement(SELECT_PRODUCT);
             stmtReadProduct.setInt(1, productId);
-
-            stmtReadReviews = con.prepareStatement("SELECT PRODUCT_ID, USER_NAME, REVIEW_TEXT, RATING, REVIEW_DATE FROM REVIEWS WHERE PRODUCT_ID = ? ");
-            stmtReadReviews.setInt(1, productId);
-
             rsReadProduct = stmtReadProduct.executeQuery();
-            rsReadReviews = stmtReadReviews.executeQuery();
 
             ProductInformation pInfo = null;
             while (rsReadProduct.next()) {
@@ -288,6 +460,9 @@ public class DBOperation {
                 pInfo = new ProductInformation(productId, name, description, price);
             }
             if (!Objects.isNull(pInfo)) {
+                stmtReadReviews = con.prepareStatement(SELECT_PRODUCT_REVIEWS);
+                stmtReadReviews.setInt(1, productId);
+                rsReadReviews = stmtReadReviews.executeQuery();
                 while (rsReadReviews.next()) {
                     String reviewUser = rsReadReviews.getString("USER_NAME");
                     String reviewText = rsReadReviews.getString("REVIEW_TEXT");
@@ -296,11 +471,7 @@ public class DBOperation {
                     pInfo.addReview(new Review(reviewUser, productId, reviewText, rating, reviewDate));
                 }
             }
-            con.commit();
             return pInfo;
-        } catch (SQLException e) {
-            con.rollback();
-            throw e;
         } finally {
             if (!Objects.isNull(rsReadProduct)) {
                 rsReadProduct.close();
@@ -318,30 +489,100 @@ public class DBOperation {
     }
 
     /**
-     * Calculates average rating of the user for all the products
+     * Reads product and its reviews in a single round trip with a LEFT JOIN.
+     * Every row repeats the product columns, product without reviews returns
+     * one row with NULL review columns
+     *
+     * @param con       Connection
+     * @param productId Product ID
+     * @return Product information with all product reviews
+     * @throws SQLException If SQL error occurs
+     */
+    private ProductInformation readProductWithReviews(Connection con, int productId) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = con.prepareStatement(SELECT_PRODUCT_WITH_REVIEWS);
+            stmt.setInt(1, productId);
+            rs = stmt.executeQuery();
+            return assembleProductWithReviews(rs, productId);
+        } finally {
+            if (!Objects.isNull(rs)) {
+                rs.close();
+            }
+            if (!Objects.isNull(stmt)) {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Builds product information from the rows of SELECT_PRODUCT_WITH_REVIEWS
+     *
+     * @param rs        Result set positioned before the first row
+     * @param productId Product ID
+     * @return Product information with all product reviews, null if there are no rows
+     * @throws SQLException If SQL error occurs
+     */
+    static ProductInformation assembleProductWithReviews(ResultSet rs, int productId) throws SQLException {
+        ProductInformation pInfo = null;
+        while (rs.next()) {
+            if (Objects.isNull(pInfo)) {
+                String name = rs.getString("NAME");
+                String description = rs.getString("DESCRIPTION");
+                double price = rs.getDouble("PRICE");
+
+                pInfo = new ProductInformation(productId, name, description, price);
+            }
+            String reviewUser = rs.getString("USER_NAME");
+            if (!Objects.isNull(reviewUser)) {
+                String reviewText = rs.getString("REVIEW_TEXT");
+                double rating = rs.getDouble("RATING");
+                LocalDateTime reviewDate = rs.getTimestamp("REVIEW_DATE").toLocalDateTime();
+                pInfo.addReview(new Review(reviewUser, productId, reviewText, rating, reviewDate));
+            }
+        }
+        return pInfo;
+    }
+
+    /**
+     * Reads average rating of the user for all the products from the rating summary
      *
      * @param con      Connection
      * @param userName Username
-     * @return Average rating by the User
+     * @return Average rating by the User, 0 if user has no reviews
      * @throws SQLException If SQL error occurs
      */
     public double getAverageUserRating(Connection con, String userName) throws SQLException {
-        con.setAutoCommit(false);
+        return executor.execute(Utility.operationIndex(Utility.GET_AVERAGE_RATING), con,
+                c -> readAverageRating(c, SELECT_AVERAGE_USER_RATING, userName));
+    }
+
+    /**
+     * Reads average rating of the product from the rating summary
+     *
+     * @param con       Connection
+     * @param productId Product ID
+     * @return Average rating of the product, 0 if product has no reviews
+     * @throws SQLException If SQL error occurs
+     */
+    public double getAverageProductRating(Connection con, int productId) throws SQLException {
+        return executor.execute(Utility.operationIndex(Utility.GET_AVERAGE_PRODUCT_RATING), con,
+                c -> readAverageRating(c, SELECT_AVERAGE_PRODUCT_RATING, productId));
+    }
+
+    private double readAverageRating(Connection con, String sql, Object key) throws SQLException {
         PreparedStatement stmt = null;
         ResultSet rs = null;
-        double userRating = 0.0;
+        double rating = 0.0;
         try {
-            stmt = con.prepareStatement("SELECT AVG(RATING) AS AVG_RATING FROM REVIEWS WHERE USER_NAME = ? ");
-            stmt.setString(1, userName);
+            stmt = con.prepareStatement(sql);
+            stmt.setObject(1, key);
             rs = stmt.executeQuery();
             while (rs.next()) {
-                userRating = rs.getDouble("AVG_RATING");
+                rating = rs.getDouble("AVG_RATING");
             }
-            con.commit();
-            return userRating;
-        } catch (SQLException e) {
-            con.rollback();
-            throw e;
+            return rating;
         } finally {
             if (!Objects.isNull(rs)) {
                 rs.close();
@@ -351,4 +592,4 @@ public class DBOperation {
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,17 @@
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
- * Utility class to set up schema by creating tables
+ * Utility class to set up schema by creating tables and secondary indexes
  *
  * @author Abhishek Inamdar
  */
 public class DBSetup {
-    static final String DROP_TABLES = "DROP TABLE IF EXISTS ORDER_DETAILS, ORDERS, REVIEWS, PRODUCTS, USERS";
+    static final String DROP_TABLES = "DROP TABLE IF EXISTS ORDER_DETAILS, ORDERS, USER_RATING_SUMMARY, PRODUCT_RATING_SUMMARY, REVIEWS, PRODUCTS, USERS";
     static final String CREATE_USERS_TABLE =
             "CREATE TABLE USERS (" +
                     "  USER_NAME VARCHAR(15)," +
@@ -35,6 +37,20 @@ public class DBSetup {
                     "  PRIMARY KEY (USER_NAME, PRODUCT_ID)," +
                     "  FOREIGN KEY (USER_NAME) REFERENCES USERS(USER_NAME)," +
                     "  FOREIGN KEY (PRODUCT_ID) REFERENCES PRODUCTS(PRODUCT_ID));";
+    static final String CREATE_USER_RATING_SUMMARY_TABLE =
+            "CREATE TABLE USER_RATING_SUMMARY (" +
+                    "  USER_NAME VARCHAR(15)," +
+                    "  REVIEW_COUNT BIGINT NOT NULL CHECK (REVIEW_COUNT > 0)," +
+                    "  RATING_SUM NUMERIC(14, 2) NOT NULL," +
+                    "  PRIMARY KEY (USER_NAME)," +
+                    "  FOREIGN KEY (USER_NAME) REFERENCES USERS(USER_NAME));";
+    static final String CREATE_PRODUCT_RATING_SUMMARY_TABLE =
+            "CREATE TABLE PRODUCT_RATING_SUMMARY (" +
+                    "  PRODUCT_ID INTEGER," +
+                    "  REVIEW_COUNT BIGINT NOT NULL CHECK (REVIEW_COUNT > 0)," +
+                    "  RATING_SUM NUMERIC(14, 2) NOT NULL," +
+                    "  PRIMARY KEY (PRODUCT_ID)," +
+                    "  FOREIGN KEY (PRODUCT_ID) REFERENCES PRODUCTS(PRODUCT_ID));";
     static final String CREATE_ORDERS_TABLE =
             "CREATE TABLE ORDERS (" +
                     "  ORDER_ID SERIAL," +
@@ -50,9 +66,64 @@ public class DBSetup {
                     "  PRIMARY KEY (ORDER_ID, PRODUCT_ID)," +
                     "  FOREIGN KEY (ORDER_ID) REFERENCES ORDERS(ORDER_ID)," +
                     "  FOREIGN KEY (PRODUCT_ID) REFERENCES PRODUCTS(PRODUCT_ID));";
+    static final String CREATE_PARTITIONED_ORDERS_TABLE =
+            "CREATE TABLE ORDERS (" +
+                    "  ORDER_ID SERIAL," +
+                    "  USER_NAME VARCHAR(15) NOT NULL," +
+                    "  ORDER_DATE TIMESTAMP NOT NULL," +
+                    "  PRIMARY KEY (ORDER_ID, ORDER_DATE)," +
+                    "  FOREIGN KEY (USER_NAME) REFERENCES USERS(USER_NAME)" +
+                    ") PARTITION BY RANGE (ORDER_DATE);";
+    static final String CREATE_PARTITIONED_ORDER_DETAILS_TABLE =
+            "CREATE TABLE ORDER_DETAILS (" +
+                    "  ORDER_ID INTEGER," +
+                    "  PRODUCT_ID INTEGER," +
+                    "  QUANTITY INTEGER NOT NULL CHECK (QUANTITY > 0)," +
+                    "  ORDER_DATE TIMESTAMP NOT NULL," +
+                    "  PRIMARY KEY (ORDER_ID, ORDER_DATE, PRODUCT_ID)," +
+                    "  CONSTRAINT " + PartitionManager.ORDER_DETAILS_FOREIGN_KEY +
+                    "  FOREIGN KEY (ORDER_ID, ORDER_DATE) REFERENCES ORDERS(ORDER_ID, ORDER_DATE)," +
+                    "  FOREIGN KEY (PRODUCT_ID) REFERENCES PRODUCTS(PRODUCT_ID)" +
+                    ") PARTITION BY RANGE (ORDER_DATE);";
+    static final String CREATE_REVIEWS_PRODUCT_ID_INDEX =
+            "CREATE INDEX IF NOT EXISTS REVIEWS_PRODUCT_ID_IDX ON REVIEWS(PRODUCT_ID)";
+    static final String CREATE_ORDERS_USER_NAME_INDEX =
+            "CREATE INDEX IF NOT EXISTS ORDERS_USER_NAME_IDX ON ORDERS(USER_NAME)";
+    static final String CREATE_ORDER_DETAILS_PRODUCT_ID_INDEX =
+            "CREATE INDEX IF NOT EXISTS ORDER_DETAILS_PRODUCT_ID_IDX ON ORDER_DETAILS(PRODUCT_ID)";
+    static final String DROP_INDEXES =
+            "DROP INDEX IF EXISTS REVIEWS_PRODUCT_ID_IDX, ORDERS_USER_NAME_IDX, ORDER_DETAILS_PRODUCT_ID_IDX";
+    static final String ANALYZE = "ANALYZE";
+    static final String SELECT_INDEX_SIZES =
+            "SELECT RELNAME, pg_relation_size(OID) FROM pg_class WHERE RELNAME IN " +
+                    " ('reviews_product_id_idx', 'orders_user_name_idx', 'order_details_product_id_idx') " +
+                    " ORDER BY RELNAME";
 
     /**
-     * Recreates all the required tables
+     * Returns the index statements of the profile.
+     * "none" keeps primary keys only, "secondary" adds single column indexes for lookups by PRODUCT_ID
+     * in REVIEWS and ORDER_DETAILS and by USER_NAME in ORDERS. The REVIEWS index is a plain one:
+     * both review queries read REVIEW_TEXT, which can not be included since large texts exceed
+     * the btree tuple limit, so no INCLUDE column list would allow an index-only scan
+     *
+     * @param profile Profile name
+     * @return CREATE INDEX statements
+     */
+    static String[] indexProfile(String profile) {
+        switch (profile.trim().toLowerCase()) {
+            case "none":
+                return new String[0];
+            case "secondary":
+                return new String[]{CREATE_REVIEWS_PRODUCT_ID_INDEX, CREATE_ORDERS_USER_NAME_INDEX,
+                        CREATE_ORDER_DETAILS_PRODUCT_ID_INDEX};
+            default:
+                throw new IllegalArgumentException("Unknown index profile " + profile);
+        }
+    }
+
+    /**
+     * Recreates all the required tables.
+     * ORDERS and ORDER_DETAILS are partitioned by month when PartitionManager is enabled
      *
      * @throws SQLException If an SQl Error occurs
      */
@@ -61,12 +132,28 @@ public class DBSetup {
         Statement stmt = null;
         try {
             stmt = con.createStatement();
+            con.setAutoCommit(true);
             stmt.execute(DROP_TABLES);
             stmt.execute(CREATE_USERS_TABLE);
             stmt.execute(CREATE_PRODUCTS_TABLE);
             stmt.execute(CREATE_REVIEWS_TABLE);
-            stmt.execute(CREATE_ORDERS_TABLE);
-            stmt.execute(CREATE_ORDER_DETAILS_TABLE);
+            stmt.execute(CREATE_USER_RATING_SUMMARY_TABLE);
+            stmt.execute(CREATE_PRODUCT_RATING_SUMMARY_TABLE);
+            if (PartitionManager.isEnabled()) {
+                YearMonth first = PartitionManager.firstMonth();
+                YearMonth last = PartitionManager.lastMonth();
+                for (String statement : PartitionManager.dropStatements(first, last)) {
+                    stmt.execute(statement);
+                }
+                stmt.execute(CREATE_PARTITIONED_ORDERS_TABLE);
+                stmt.execute(CREATE_PARTITIONED_ORDER_DETAILS_TABLE);
+                for (String statement : PartitionManager.createStatements(first, last)) {
+                    stmt.execute(statement);
+                }
+            } else {
+                stmt.execute(CREATE_ORDERS_TABLE);
+                stmt.execute(CREATE_ORDER_DETAILS_TABLE);
+            }
         } finally {
             try {
                 if (!Objects.isNull(stmt)) {
@@ -75,6 +162,62 @@ public class DBSetup {
             } catch (SQLException e) {
                 System.err.println("Something went REALLY wrong.");
             }
+            con.close();
+        }
+    }
+
+    /**
+     * Creates indexes of the profile configured with INDEX_PROFILE property and
+     * refreshes planner statistics. Called after the data is loaded
+     *
+     * @throws SQLException If an SQl Error occurs
+     */
+    public void createIndexes() throws SQLException {
+        createIndexes(DBBase.getProperty("INDEX_PROFILE", "none"));
+    }
+
+    /**
+     * Creates indexes of the given profile and refreshes planner statistics
+     *
+     * @param profile Profile name
+     * @throws SQLException If an SQl Error occurs
+     */
+    public void createIndexes(String profile) throws SQLException {
+        String[] statements = indexProfile(profile);
+        String[] withAnalyze = Arrays.copyOf(statements, statements.length + 1);
+        withAnalyze[statements.length] = ANALYZE;
+        execute(withAnalyze);
+    }
+
+    /**
+     * Drops all the secondary indexes and refreshes planner statistics
+     *
+     * @throws SQLException If an SQl Error occurs
+     */
+    public void dropIndexes() throws SQLException {
+        execute(DROP_INDEXES, ANALYZE);
+    }
+
+    /**
+     * Runs DDL statements one by one in autocommit mode
+     *
+     * @param statements SQL statements
+     * @throws SQLException If an SQl Error occurs
+     */
+    void execute(String... statements) throws SQLException {
+        try (Connection con = DBBase.getConnection()) {
+            con.setAutoCommit(true);
+            Statement stmt = null;
+            try {
+                stmt = con.createStatement();
+                for (String statement : statements) {
+                    stmt.execute(statement);
+                }
+            } finally {
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
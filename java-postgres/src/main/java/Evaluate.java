@@ -1,15 +1,9 @@
-import io.codearte.jfairy.Fairy;
-import io.codearte.jfairy.producer.person.Person;
-import io.codearte.jfairy.producer.text.TextProducer;
-
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Evaluate class to perform testing
@@ -18,165 +12,311 @@ import java.util.concurrent.Executors;
  */
 public class Evaluate extends Utility {
 
-    static int noOfOperations = 0;
-    static int noOfProductStockFailure = 0;
+    static LatencyRecorder latencyRecorder = new LatencyRecorder();
+    static RunStatistics statistics = new RunStatistics();
+    static RuntimeTelemetry telemetry = new RuntimeTelemetry();
+    static WorkloadKeys keys = null;
+    /**
+     * Operations of the current run. Executor, cache, bus and query settings are resolved
+     * once per run, so workers take no shared locks to look them up
+     */
+    static DBOperation operation = null;
+    /**
+     * Names and review texts of the run, looked up once instead of through the synchronized getDefault
+     */
+    static SyntheticData syntheticData = null;
+    static AliasSampler operationSampler = null;
+    static ConnectionLimiter connectionLimiter = null;
+    static ResultsWriter resultsWriter = null;
+
+    /**
+     * Performs one operation with random arguments
+     */
+    interface OperationHandler {
+        void perform(Connection con, DBOperation operation, KeyDistribution products,
+                     KeyDistribution users) throws SQLException;
+    }
+
+    /**
+     * Handlers indexed as Utility.OPERATIONS
+     */
+    private static final OperationHandler[] HANDLERS = new OperationHandler[Operation.values().length];
+
+    static {
+        HANDLERS[Operation.CREATE_ACCOUNT.getIndex()] = Evaluate::createAccount;
+        HANDLERS[Operation.ADD_PRODUCT.getIndex()] = Evaluate::addProduct;
+        HANDLERS[Operation.UPDATE_STOCK_LEVEL.getIndex()] = Evaluate::updateStockLevel;
+        HANDLERS[Operation.GET_PRODUCT_REVIEWS.getIndex()] = Evaluate::getProductAndReviews;
+        HANDLERS[Operation.GET_AVERAGE_RATING.getIndex()] = Evaluate::getAverageUserRating;
+        HANDLERS[Operation.SUBMIT_ORDER.getIndex()] = Evaluate::submitOrder;
+        HANDLERS[Operation.POST_REVIEW.getIndex()] = Evaluate::postReview;
+        HANDLERS[Operation.GET_AVERAGE_PRODUCT_RATING.getIndex()] = Evaluate::getAverageProductRating;
+    }
 
     /**
-     * Method to choose operation based on the probability - integer based
+     * Runs operations; dropped open loop arrivals are counted as dropped operations of the mix
+     */
+    private static final WorkloadDriver.Task TASK = new WorkloadDriver.Task() {
+        @Override
+        public void run(long intendedStartNanos) {
+            runOperation(intendedStartNanos);
+        }
+
+        @Override
+        public void dropped(long intendedStartNanos) {
+            statistics.recordDropped(operationSampler.next());
+        }
+    };
+
+    /**
+     * Runs one operation chosen by the operation sampler on its own pooled session
      *
-     * @param random random integer in the range 1 to 100
-     * @return Chosen DB operation
+     * @param intendedStartNanos Time at which the operation was supposed to start
      */
-    public static String getOperation(final int random) {
-        String operation;
-        if (random <= 3) {
-            // 3% probability
-            operation = CREATE_ACCOUNT;
-        } else if (random <= 5) {
-            // 2% probability
-            operation = ADD_PRODUCT;
-        } else if (random <= 15) {
-            // 10% probability
-            operation = UPDATE_STOCK_LEVEL;
-        } else if (random <= 80) {
-            // 65% probability
-            operation = GET_PRODUCT_REVIEWS;
-        } else if (random <= 85) {
-            // 5% probability
-            operation = GET_AVERAGE_RATING;
-        } else if (random <= 95) {
-            // 10% probability
-            operation = SUBMIT_ORDER;
-        } else {
-            // 5% probability
-            operation = POST_REVIEW;
+    public static void runOperation(long intendedStartNanos) {
+        int operationIndex = operationSampler.next();
+        statistics.recordAttempt(operationIndex);
+        long allocatedBytesAtStart = RuntimeTelemetry.currentThreadAllocatedBytes();
+        ConnectionLimiter limiter = connectionLimiter;
+        boolean permitted = false;
+        try {
+            long waitStart = System.nanoTime();
+            if (limiter != null) {
+                limiter.acquire();
+                permitted = true;
+            }
+            try (Connection con = DBBase.getConnection()) {
+                statistics.recordConnectionWait(operationIndex, System.nanoTime() - waitStart);
+                HANDLERS[operationIndex].perform(con, operation,
+                        keys.products(operationIndex), keys.users(operationIndex));
+                statistics.recordSuccess(operationIndex);
+            }
+        } catch (SQLException e) {
+            statistics.recordFailure(operationIndex, e.getSQLState());
+            if (ConnectionPool.POOL_TIMEOUT_SQL_STATE.equals(e.getSQLState())) {
+                System.err.println("Can not establish the DB connection " + e.getMessage());
+                return;
+            }
+            if (!DUPLICATE_SQL_STATE.equals(e.getSQLState())
+                    && !FK_CONSTRAINT_SQL_STATE.equals(e.getSQLState())
+                    && !CONSTRAINT_SQL_STATE.equals(e.getSQLState())
+                    && !TRANSACTION_BLOCKED_STATE.equals(e.getSQLState())
+                    && !SERIALIZATION_FAILURE_SQL_STATE.equals(e.getSQLState())
+                    && !DEADLOCK_SQL_STATE.equals(e.getSQLState())) {
+                System.err.println("Unexpected SQLException occurred while performing "
+                        + Operation.fromIndex(operationIndex).getOperationName()
+                        + ", " + e.getSQLState() + e.getMessage());
+            }
+        } finally {
+            if (permitted) {
+                limiter.release();
+            }
+            latencyRecorder.record(operationIndex, System.nanoTime() - intendedStartNanos);
+            telemetry.recordAllocation(operationIndex, allocatedBytesAtStart);
         }
-        return operation;
     }
 
+    private static void createAccount(Connection con, DBOperation operation, KeyDistribution products,
+                                      KeyDistribution users) throws SQLException {
+        String[] name = syntheticData.nextName();
+        int userId = users.nextNewKey();
+        String userName = USER_NAME_PREFIX + userId;
+        String password = PASSWORD_PREFIX + userId;
+        String firstName = name[0];
+        String lastName = name[1];
+        operation.createAccount(con, userName, password, firstName, lastName);
+        users.getKeySpace().advance(userId);
+    }
+
+    private static void addProduct(Connection con, DBOperation operation, KeyDistribution products,
+                                   KeyDistribution users) throws SQLException {
+        String productName = SyntheticData.randomString(15);
+        String productDesc = SyntheticData.randomString(50);
+        double productPrice = doubleBetween(MIN_PRODUCT_PRICE, MAX_PRODUCT_PRICE);
+        int productStock = intBetween(MIN_PRODUCT_STOCK, MAX_PRODUCT_STOCK);
+        int productId = operation.addProduct(con, productName, productDesc, productPrice, productStock);
+        products.getKeySpace().advance(productId);
+    }
+
+    private static void updateStockLevel(Connection con, DBOperation operation, KeyDistribution products,
+                                         KeyDistribution users) throws SQLException {
+        int productId = products.next();
+        int quantity = intBetween(MIN_PRODUCT_STOCK, MAX_PRODUCT_STOCK);
+        operation.updateStockLevel(con, productId, quantity);
+    }
+
+    private static void getProductAndReviews(Connection con, DBOperation operation, KeyDistribution products,
+                                             KeyDistribution users) throws SQLException {
+        int productId = products.next();
+        operation.getProductAndReviews(con, productId);
+    }
+
+    private static void getAverageUserRating(Connection con, DBOperation operation, KeyDistribution products,
+                                             KeyDistribution users) throws SQLException {
+        int userId = users.next();
+        String userName = USER_NAME_PREFIX + userId;
+        operation.getAverageUserRating(con, userName);
+    }
+
+    private static void getAverageProductRating(Connection con, DBOperation operation, KeyDistribution products,
+                                                KeyDistribution users) throws SQLException {
+        int productId = products.next();
+        operation.getAverageProductRating(con, productId);
+    }
+
+    private static void submitOrder(Connection con, DBOperation operation, KeyDistribution products,
+                                    KeyDistribution users) throws SQLException {
+        int userId = users.next();
+        String userName = USER_NAME_PREFIX + userId;
+        String password = PASSWORD_PREFIX + userId;
+        LocalDateTime orderDate = getRandomOrderDate();
+        Map<Integer, Integer> productQuantities = new HashMap<>();
+        populateProductQuantityMap(productQuantities, products);
+        operation.submitOrder(con, orderDate, userName, password, productQuantities);
+    }
+
+    private static void postReview(Connection con, DBOperation operation, KeyDistribution products,
+                                   KeyDistribution users) throws SQLException {
+        int userId = users.next();
+        String userName = USER_NAME_PREFIX + userId;
+        String password = PASSWORD_PREFIX + userId;
+        int productId = products.next();
+        double rating = doubleBetween(MIN_REVIEW_RATING, MAX_REVIEW_RATING);
+        String reviewText = syntheticData.nextReviewText();
+        operation.postReview(con, userName, password, productId, rating, reviewText);
+    }
+
+    /**
+     * Runs every workload profile for each thread count of its schedule.
+     * Profiles are given as --profiles=a,b or WORKLOAD_PROFILES property,
+     * scale factor as --scale-factor=N, overriding SCALE_FACTOR property
+     *
+     * @param args Command line arguments
+     */
     public static void main(String[] args) {
-        //Loop for threadCount 1 to 10
-        for (int threadCount = 1; threadCount <= MAX_THREADS_TO_RUN; threadCount++) {
+        String profiles = DBBase.getProperty("WORKLOAD_PROFILES", "default");
+        for (String arg : args) {
+            if (arg.startsWith("--scale-factor=")) {
+                setScaleFactor(Double.parseDouble(arg.substring("--scale-factor=".length())));
+            } else if (arg.startsWith("--profiles=")) {
+                profiles = arg.substring("--profiles=".length());
+            }
+        }
+        try {
+            resultsWriter = ResultsWriter.fromProperties();
+        } catch (IOException e) {
+            System.err.println("Can not write results " + e.getMessage());
+        }
+        System.out.println("Scale factor: " + getScaleFactor() + " (users: " + NUM_USERS + ", products: "
+                + NUM_PRODUCTS + ", reviews: " + NUM_REVIEWS + ", orders: " + NUM_ORDERS + ")");
+        syntheticData = SyntheticData.getDefault();
+        for (String profileName : profiles.split(",")) {
+            WorkloadProfile profile;
+            try {
+                profile = WorkloadProfile.load(profileName.trim());
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                continue;
+            }
+            System.out.println("Profile: " + profile.getName() + " start!");
+            keys = WorkloadKeys.fromProfile(profile);
+            operationSampler = profile.operationSampler();
+            System.out.println(keys);
+            for (int threadCount : profile.getThreadCounts()) {
+                runThreadCount(profile, threadCount);
+            }
+            System.out.println("Profile: " + profile.getName() + " End!");
+        }
+        CacheInvalidationBus.shutdownDefault();
+        SyntheticData.shutdownDefault();
+        QueryInstrumentation.shutdown();
+        if (resultsWriter != null) {
             try {
-                noOfOperations = 0;
-                noOfProductStockFailure = 0;
-
-                //DB Initialization and setup
-                DBInitialize initialize = new DBInitialize();
-                initialize.setupAndInitializeDB();
-
-                System.out.println("ThreadCount: " + threadCount + " start!");
-                //creating threadpool and executing threads
-                ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
-                final long startTime = System.nanoTime();
-                long elapsedNanos = System.nanoTime() - startTime;
-                while ((elapsedNanos / (1e9 * 60)) < MINUTES_TO_RUN) {
-                    executorService.execute(() -> {
-                        Connection con = null;
-                        try {
-                            con = DBBase.getConnection();
-                        } catch (SQLException e) {
-                            System.err.println("Can not establish the DB connection");
-                        }
-                        Objects.requireNonNull(con);
-                        DBOperation operation = new DBOperation();
-                        String randomOperation = getOperation(intBetween(1, 100));
-                        try {
-                            noOfOperations++;
-                            Fairy fairy;
-                            TextProducer text;
-                            int userId, productId;
-                            String userName, password;
-                            switch (Objects.requireNonNull(randomOperation)) {
-                                case CREATE_ACCOUNT:
-                                    fairy = Fairy.create();
-                                    Person person = fairy.person();
-                                    userId = intBetween(1, NUM_USERS);
-                                    userName = USER_NAME_PREFIX + userId;
-                                    password = PASSWORD_PREFIX + userId;
-                                    String firstName = person.getFirstName();
-                                    String lastName = person.getLastName();
-                                    operation.createAccount(con, userName, password, firstName, lastName);
-                                    System.gc();
-                                    break;
-                                case ADD_PRODUCT:
-                                    fairy = Fairy.create();
-                                    text = fairy.textProducer();
-                                    String productName = text.randomString(15);
-                                    String productDesc = text.randomString(50);
-                                    double productPrice = doubleBetween(MIN_PRODUCT_PRICE, MAX_PRODUCT_PRICE);
-                                    int productStock = intBetween(MIN_PRODUCT_STOCK, MAX_PRODUCT_STOCK);
-                                    operation.addProduct(con, productName, productDesc, productPrice, productStock);
-                                    System.gc();
-                                    break;
-                                case UPDATE_STOCK_LEVEL:
-                                    productId = intBetween(1, NUM_PRODUCTS);
-                                    int quantity = intBetween(MIN_PRODUCT_STOCK, MAX_PRODUCT_STOCK);
-                                    operation.updateStockLevel(con, productId, quantity);
-                                    System.gc();
-                                    break;
-                                case GET_PRODUCT_REVIEWS:
-                                    productId = intBetween(1, NUM_PRODUCTS);
-                                    operation.getProductAndReviews(con, productId);
-                                    System.gc();
-                                    break;
-                                case GET_AVERAGE_RATING:
-                                    userId = intBetween(1, NUM_USERS);
-                                    userName = USER_NAME_PREFIX + userId;
-                                    operation.getAverageUserRating(con, userName);
-                                    System.gc();
-                                    break;
-                                case SUBMIT_ORDER:
-                                    userId = intBetween(1, NUM_USERS);
-                                    userName = USER_NAME_PREFIX + userId;
-                                    password = PASSWORD_PREFIX + userId;
-                                    LocalDateTime orderDate = getRandomOrderDate();
-                                    Map<Integer, Integer> productQuantities = new HashMap<>();
-                                    populateProductQuantityMap(productQuantities);
-                                    operation.submitOrder(con, orderDate, userName, password, productQuantities);
-                                    System.gc();
-                                    break;
-                                case POST_REVIEW:
-                                    fairy = Fairy.create();
-                                    text = fairy.textProducer();
-                                    userId = intBetween(1, NUM_USERS);
-                                    userName = USER_NAME_PREFIX + userId;
-                                    password = PASSWORD_PREFIX + userId;
-                                    productId = intBetween(1, NUM_PRODUCTS);
-                                    double rating = doubleBetween(MIN_REVIEW_RATING, MAX_REVIEW_RATING);
-                                    String reviewText = text.text();
-                                    operation.postReview(con, userName, password, productId, rating, reviewText);
-                                    System.gc();
-                                    break;
-                                default:
-                                    break;
-                            }
-                        } catch (SQLException e) {
-                            if (CONSTRAINT_SQL_STATE.equals(e.getSQLState())
-                                    && SUBMIT_ORDER.equals(randomOperation)) {
-                                noOfProductStockFailure++;
-                            }
-
-                            if (!DUPLICATE_SQL_STATE.equals(e.getSQLState())
-                                    && !FK_CONSTRAINT_SQL_STATE.equals(e.getSQLState())
-                                    && !CONSTRAINT_SQL_STATE.equals(e.getSQLState())
-                                    && !TRANSACTION_BLOCKED_STATE.equals(e.getSQLState())) {
-                                System.err.println("Unexpected SQLException occurred while performing " + randomOperation
-                                        + ", " + e.getSQLState() + e.getMessage());
-                            }
-                        }
-                    });
-                    elapsedNanos = System.nanoTime() - startTime;
-                }
-                //Shutting down all the threads
-                executorService.shutdownNow();
-
-                //printing results for Graph plotting
-                System.out.println("ThreadCount: " + threadCount + " End! Total Operations: " + noOfOperations
-                        + ", noOfProductStockFailure: " + noOfProductStockFailure);
-            } catch (Exception e) {
-                System.err.println("SOMETHING WENT WRONG!!" + e.getMessage());
+                resultsWriter.close();
+            } catch (IOException e) {
+                System.err.println("Can not write results " + e.getMessage());
+            }
+            System.out.println(resultsWriter.getStats());
+        }
+        DBBase.closePool();
+    }
+
+    /**
+     * Reinitializes the database and runs the profile with threadCount workers:
+     * first for the warm-up period, whose measurements are discarded, then for the run duration.
+     * With VIRTUAL_THREADS the workers are virtual threads sharing a connection limiter
+     * and striped latency recorders, and carrier thread pinning is reported
+     *
+     * @param profile     Workload profile
+     * @param threadCount Number of workers
+     */
+    private static void runThreadCount(WorkloadProfile profile, int threadCount) {
+        try {
+            //DB Initialization and setup
+            DBInitialize initialize = new DBInitialize();
+            initialize.setupAndInitializeDB();
+            // Key spaces start again from the reloaded tables
+            keys = WorkloadKeys.fromProfile(profile);
+            operation = new DBOperation();
+
+            System.out.println("ThreadCount: " + threadCount + " start!");
+            boolean virtualThreads = Boolean.parseBoolean(profile.getProperty("VIRTUAL_THREADS", "false"));
+            connectionLimiter = virtualThreads ? ConnectionLimiter.fromProperties() : null;
+            if (profile.getWarmupSeconds() > 0) {
+                latencyRecorder = newLatencyRecorder(virtualThreads);
+                statistics = new RunStatistics();
+                WorkloadDriver.fromProfile(profile, threadCount, profile.getWarmupSeconds())
+                        .run(TASK);
+            }
+            //running workload with threadCount workers for the configured duration
+            latencyRecorder = newLatencyRecorder(virtualThreads);
+            statistics = new RunStatistics();
+            TransactionExecutor.resetCounters();
+            QueryInstrumentation.reset();
+            telemetry.close();
+            telemetry = new RuntimeTelemetry();
+            IntervalReporter reporter = new IntervalReporter(profile.getName(), threadCount,
+                    profile.getLongProperty("REPORT_INTERVAL_SECONDS", 10), latencyRecorder, statistics, telemetry,
+                    resultsWriter, profile.getLongProperty("RESULTS_INTERVAL_SECONDS", 1));
+            WorkloadDriver driver = WorkloadDriver.fromProfile(profile, threadCount, profile.getRunDurationSeconds());
+            PinnedThreadMonitor pinnedThreadMonitor = virtualThreads ? PinnedThreadMonitor.fromProperties() : null;
+            reporter.start();
+            driver.run(TASK);
+            reporter.stop();
+
+            //printing results for Graph plotting
+            RunStatistics.Snapshot snapshot = statistics.snapshot();
+            System.out.println("ThreadCount: " + threadCount + " End! Total Operations: " + snapshot.getTotalAttempts()
+                    + ", noOfProductStockFailure: "
+                    + snapshot.getFailures(operationIndex(SUBMIT_ORDER), CONSTRAINT_SQL_STATE)
+                    + ", droppedArrivals: " + driver.getDropped());
+            System.out.println(StatementCache.getStats());
+            System.out.println(QueryInstrumentation.getStats());
+            if (connectionLimiter != null) {
+                System.out.println(connectionLimiter.getStats());
             }
+            if (pinnedThreadMonitor != null) {
+                System.out.println(pinnedThreadMonitor.stop());
+            }
+            if (ProductCache.getDefault() != null) {
+                System.out.println(ProductCache.getDefault().getStats());
+            }
+            if (CacheInvalidationBus.getDefault() != null) {
+                System.out.println(CacheInvalidationBus.getDefault().getStats());
+            }
+        } catch (Exception e) {
+            System.err.println("SOMETHING WENT WRONG!!" + e.getMessage());
         }
     }
+
+    /**
+     * Per-thread histograms do not scale to thousands of virtual threads, which share striped ones instead
+     *
+     * @param virtualThreads true if workers are virtual threads
+     * @return LatencyRecorder object
+     */
+    private static LatencyRecorder newLatencyRecorder(boolean virtualThreads) {
+        return virtualThreads ? new LatencyRecorder(Runtime.getRuntime().availableProcessors() * 2)
+                : new LatencyRecorder();
+    }
 }
@@ -0,0 +1,352 @@
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs EXPLAIN (ANALYZE, BUFFERS) for every DBOperation statement without and with
+ * the indexes of a profile, and reports plan, buffers and execution time of both.
+ * The profile is the first argument, or INDEX_PROFILE unless that is "none", or "secondary".
+ * Sizes of the created indexes are reported with the plans.
+ * Every statement runs in a transaction which is rolled back, so writes leave no trace.
+ * Expects a loaded database; indexes of the profile are left in place.
+ *
+ * @author Abhishek Inamdar
+ */
+public class IndexAdvisor extends Utility {
+    static final String EXPLAIN = "EXPLAIN (ANALYZE, BUFFERS) ";
+    static final String SELECT_PRODUCT_NOT_IN_ORDER =
+            "SELECT MIN(PRODUCT_ID) FROM PRODUCTS WHERE PRODUCT_ID NOT IN " +
+                    " (SELECT PRODUCT_ID FROM ORDER_DETAILS WHERE ORDER_ID = ?)";
+    static final String SELECT_ORDER_DATE = "SELECT ORDER_DATE FROM ORDERS WHERE ORDER_ID = ?";
+    static final String SELECT_PRODUCT_NOT_REVIEWED =
+            "SELECT MIN(PRODUCT_ID) FROM PRODUCTS WHERE PRODUCT_ID NOT IN " +
+                    " (SELECT PRODUCT_ID FROM REVIEWS WHERE USER_NAME = ?)";
+
+    private static final Pattern BUFFERS = Pattern.compile("shared hit=(\\d+)(?: read=(\\d+))?");
+    private static final Pattern EXECUTION_TIME = Pattern.compile("Execution Time: ([0-9.]+) ms");
+
+    /**
+     * Binds sample parameters to the explained statement
+     */
+    interface Binder {
+        void bind(Connection con, PreparedStatement stmt) throws SQLException;
+    }
+
+    /**
+     * Statement to explain with its sample parameters
+     */
+    private static class Probe {
+        private final String name;
+        private final String sql;
+        private final Binder binder;
+
+        private Probe(String name, String sql, Binder binder) {
+            this.name = name;
+            this.sql = sql;
+            this.binder = binder;
+        }
+    }
+
+    /**
+     * Summary of the plans of one probe
+     */
+    private static class PlanSummary {
+        private String topNode = "";
+        private final List<String> scans = new ArrayList<>();
+        private long sharedHit;
+        private long sharedRead;
+        private final double[] executionMillis;
+        private String error;
+
+        private PlanSummary(int runs) {
+            executionMillis = new double[runs];
+        }
+
+        private double medianMillis() {
+            double[] sorted = executionMillis.clone();
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2];
+        }
+
+        @Override
+        public String toString() {
+            if (!Objects.isNull(error)) {
+                return "failed " + error;
+            }
+            return String.format("%s %s, shared hit=%d read=%d, median %.3f ms",
+                    topNode, scans, sharedHit, sharedRead, medianMillis());
+        }
+    }
+
+    public static void main(String[] args) {
+        IndexAdvisor advisor = new IndexAdvisor();
+        String profile = args.length > 0 ? args[0] : DBBase.getProperty("INDEX_PROFILE", "none");
+        if ("none".equalsIgnoreCase(profile.trim()) && args.length == 0) {
+            profile = "secondary";
+        }
+        int runs = DBBase.getIntProperty("ADVISOR_RUNS", 5);
+        try {
+            List<Probe> probes = advisor.probes();
+            DBSetup setup = new DBSetup();
+            setup.dropIndexes();
+            List<PlanSummary> before = advisor.explainAll(probes, runs);
+            setup.createIndexes(profile);
+            List<PlanSummary> after = advisor.explainAll(probes, runs);
+            System.out.println("Index profile: " + profile + ", runs per statement: " + runs
+                    + ", index sizes: " + advisor.indexSizes());
+            for (int i = 0; i < probes.size(); i++) {
+                System.out.println(probes.get(i).name);
+                System.out.println("  before: " + before.get(i));
+                System.out.println("  after:  " + after.get(i));
+            }
+        } catch (SQLException e) {
+            System.err.println("Index advisor failed " + e.getSQLState() + e.getMessage());
+        } finally {
+            DBBase.closePool();
+        }
+    }
+
+    /**
+     * Builds probes for all the DBOperation statements. Sample keys are chosen
+     * once, so the runs before and after the indexes read the same rows
+     */
+    private List<Probe> probes() {
+        final int userId = intBetween(1, NUM_USERS);
+        final String userName = USER_NAME_PREFIX + userId;
+        final String password = PASSWORD_PREFIX + userId;
+        final int productId = intBetween(1, NUM_PRODUCTS);
+        final int orderId = intBetween(1, NUM_ORDERS);
+        final Integer[] productIds = {productId, productId % NUM_PRODUCTS + 1};
+        final Integer[] quantities = {1, 1};
+        final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Probe> probes = new ArrayList<>();
+        probes.add(new Probe("createAccount", DBOperation.INSERT_USER, (con, stmt) -> {
+            stmt.setString(1, "advisor" + userId);
+            stmt.setString(2, password);
+            stmt.setString(3, "First");
+            stmt.setString(4, "Last");
+        }));
+        probes.add(new Probe("isUserAuthorized", DBOperation.SELECT_AUTHORIZED_USER, (con, stmt) -> {
+            stmt.setString(1, userName);
+            stmt.setString(2, password);
+        }));
+        probes.add(new Probe("submitOrder: order", DBOperation.INSERT_AUTHORIZED_ORDER, (con, stmt) -> {
+            stmt.setTimestamp(1, now);
+            stmt.setString(2, userName);
+            stmt.setString(3, password);
+        }));
+        probes.add(new Probe("submitOrder: stock", DBOperation.UPDATE_PRODUCTS_STOCK_BATCH, (con, stmt) -> {
+            Array ids = con.createArrayOf("integer", productIds);
+            stmt.setArray(1, ids);
+            stmt.setArray(2, ids);
+            stmt.setArray(3, con.createArrayOf("integer", quantities));
+        }));
+        final boolean partitioned = PartitionManager.isEnabled();
+        probes.add(new Probe("submitOrder: details", partitioned
+                ? DBOperation.INSERT_PARTITIONED_ORDER_DETAILS_BATCH : DBOperation.INSERT_ORDER_DETAILS_BATCH,
+                (con, stmt) -> {
+                    stmt.setInt(1, orderId);
+                    // Product not in the sampled order, to avoid duplicate keys
+                    int newProductId = firstProductNotIn(con, SELECT_PRODUCT_NOT_IN_ORDER, orderId);
+                    stmt.setArray(2, con.createArrayOf("integer", new Integer[]{newProductId}));
+                    stmt.setArray(3, con.createArrayOf("integer", new Integer[]{1}));
+                    if (partitioned) {
+                        stmt.setTimestamp(4, orderDate(con, orderId));
+                    }
+                }));
+        probes.add(new Probe("postReview: review", DBOperation.INSERT_REVIEW, (con, stmt) -> {
+            stmt.setString(1, userName);
+            stmt.setInt(2, firstProductNotIn(con, SELECT_PRODUCT_NOT_REVIEWED, userName));
+            stmt.setString(3, "advisor");
+            stmt.setDouble(4, 3.0);
+            stmt.setTimestamp(5, now);
+        }));
+        probes.add(new Probe("postReview: user summary", DBOperation.UPSERT_USER_RATING_SUMMARY, (con, stmt) -> {
+            stmt.setString(1, userName);
+            stmt.setDouble(2, 3.0);
+        }));
+        probes.add(new Probe("postReview: product summary", DBOperation.UPSERT_PRODUCT_RATING_SUMMARY,
+                (con, stmt) -> {
+                    stmt.setInt(1, productId);
+                    stmt.setDouble(2, 3.0);
+                }));
+        probes.add(new Probe("addProduct", DBOperation.INSERT_PRODUCT, (con, stmt) -> {
+            stmt.setString(1, "advisor");
+            stmt.setString(2, "advisor");
+            stmt.setDouble(3, 1.0);
+            stmt.setInt(4, 1);
+        }));
+        probes.add(new Probe("updateStockLevel", DBOperation.UPDATE_PRODUCT_STOCK_INCREMENT, (con, stmt) -> {
+            stmt.setInt(1, 1);
+            stmt.setInt(2, productId);
+        }));
+        probes.add(new Probe("getProductAndReviews: product", DBOperation.SELECT_PRODUCT,
+                (con, stmt) -> stmt.setInt(1, productId)));
+        probes.add(new Probe("getProductAndReviews: reviews", DBOperation.SELECT_PRODUCT_REVIEWS,
+                (con, stmt) -> stmt.setInt(1, productId)));
+        probes.add(new Probe("getProductAndReviews: join", DBOperation.SELECT_PRODUCT_WITH_REVIEWS,
+                (con, stmt) -> stmt.setInt(1, productId)));
+        probes.add(new Probe("getAverageUserRating", DBOperation.SELECT_AVERAGE_USER_RATING,
+                (con, stmt) -> stmt.setString(1, userName)));
+        probes.add(new Probe("getAverageProductRating", DBOperation.SELECT_AVERAGE_PRODUCT_RATING,
+                (con, stmt) -> stmt.setInt(1, productId)));
+        return probes;
+    }
+
+    private List<PlanSummary> explainAll(List<Probe> probes, int runs) throws SQLException {
+        List<PlanSummary> summaries = new ArrayList<>();
+        try (Connection con = DBBase.getConnection()) {
+            con.setAutoCommit(false);
+            for (Probe probe : probes) {
+                PlanSummary summary = new PlanSummary(runs);
+                for (int run = 0; run < runs && Objects.isNull(summary.error); run++) {
+                    try {
+                        explain(con, probe, summary, run);
+                    } catch (SQLException e) {
+                        summary.error = e.getSQLState() + " " + e.getMessage();
+                    } finally {
+                        con.rollback();
+                    }
+                }
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Explains the probe once. Plan shape and buffers are taken from the last run,
+     * when the cache is warm
+     */
+    private void explain(Connection con, Probe probe, PlanSummary summary, int run) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = con.prepareStatement(EXPLAIN + probe.sql);
+            probe.binder.bind(con, stmt);
+            rs = stmt.executeQuery();
+            summary.scans.clear();
+            boolean first = true;
+            boolean topBuffers = true;
+            while (rs.next()) {
+                String line = rs.getString(1);
+                String trimmed = line.trim();
+                if (first) {
+                    summary.topNode = node(trimmed);
+                    first = false;
+                } else if (trimmed.startsWith("->") && trimmed.contains("Scan")) {
+                    summary.scans.add(node(trimmed.substring(2).trim()));
+                }
+                Matcher buffers = BUFFERS.matcher(line);
+                if (trimmed.startsWith("Buffers:") && topBuffers) {
+                    // Buffers of the top node include all its children
+                    topBuffers = false;
+                    boolean found = buffers.find();
+                    summary.sharedHit = found ? Long.parseLong(buffers.group(1)) : 0;
+                    summary.sharedRead = found && !Objects.isNull(buffers.group(2))
+                            ? Long.parseLong(buffers.group(2)) : 0;
+                }
+                Matcher executionTime = EXECUTION_TIME.matcher(trimmed);
+                if (executionTime.find()) {
+                    summary.executionMillis[run] = Double.parseDouble(executionTime.group(1));
+                }
+            }
+            if (summary.topNode.contains("Scan")) {
+                summary.scans.add(summary.topNode);
+            }
+        } finally {
+            if (!Objects.isNull(rs)) {
+                rs.close();
+            }
+            if (!Objects.isNull(stmt)) {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * @return size in bytes of every secondary index that exists
+     */
+    private Map<String, Long> indexSizes() throws SQLException {
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        try (Connection con = DBBase.getConnection()) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+            try {
+                stmt = con.prepareStatement(DBSetup.SELECT_INDEX_SIZES);
+                rs = stmt.executeQuery();
+                while (rs.next()) {
+                    sizes.put(rs.getString(1), rs.getLong(2));
+                }
+            } finally {
+                if (!Objects.isNull(rs)) {
+                    rs.close();
+                }
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns the lowest product ID not returned by the subquery of the given statement
+     */
+    private static int firstProductNotIn(Connection con, String sql, Object key) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = con.prepareStatement(sql);
+            stmt.setObject(1, key);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 1;
+        } finally {
+            if (!Objects.isNull(rs)) {
+                rs.close();
+            }
+            if (!Objects.isNull(stmt)) {
+                stmt.close();
+            }
+        }
+    }
+
+    private static Timestamp orderDate(Connection con, int orderId) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = con.prepareStatement(SELECT_ORDER_DATE);
+            stmt.setInt(1, orderId);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getTimestamp(1) : new Timestamp(MIN_ORDER_DATE);
+        } finally {
+            if (!Objects.isNull(rs)) {
+                rs.close();
+            }
+            if (!Objects.isNull(stmt)) {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Strips cost and timing from a plan node line
+     */
+    private static String node(String line) {
+        int costStart = line.indexOf("  (");
+        return costStart < 0 ? line : line.substring(0, costStart);
+    }
+}
@@ -0,0 +1,162 @@
+import org.HdrHistogram.Histogram;
+
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints run results, including allocation and GC telemetry, at a fixed interval
+ * while the workload is running and a summary once it is stopped.
+ * With a ResultsWriter, records of every operation are also written at the record
+ * interval, which is usually shorter than the printed one
+ *
+ * @author Abhishek Inamdar
+ */
+public class IntervalReporter {
+    private final String profileName;
+    private final int threadCount;
+    private final long intervalSeconds;
+    private final long recordIntervalSeconds;
+    private final ResultsWriter resultsWriter;
+    private final LatencyRecorder latencyRecorder;
+    private final RunStatistics statistics;
+    private final RuntimeTelemetry telemetry;
+
+    private ScheduledExecutorService scheduler;
+    private long startNanos;
+    private long lastIntervalNanos;
+    private RunStatistics.Snapshot lastSnapshot;
+    private RuntimeTelemetry.Snapshot firstTelemetry;
+    private RuntimeTelemetry.Snapshot lastTelemetry;
+    private long lastRecordNanos;
+    private RunStatistics.Snapshot lastRecordSnapshot;
+    private RuntimeTelemetry.Snapshot lastRecordTelemetry;
+    private final Histogram[] printed;
+
+    /**
+     * Creates reporter
+     *
+     * @param profileName           Workload profile of the run, written with every record
+     * @param threadCount           Thread count of the run, printed with every interval
+     * @param intervalSeconds       Printed interval length
+     * @param latencyRecorder       Latencies of the run
+     * @param statistics            Counters of the run
+     * @param telemetry             Allocation, GC and heap telemetry of the run
+     * @param resultsWriter         Writer of interval records, null if records are not written
+     * @param recordIntervalSeconds Record interval length, at most intervalSeconds
+     */
+    public IntervalReporter(String profileName, int threadCount, long intervalSeconds,
+                            LatencyRecorder latencyRecorder, RunStatistics statistics, RuntimeTelemetry telemetry,
+                            ResultsWriter resultsWriter, long recordIntervalSeconds) {
+        this.profileName = profileName;
+        this.threadCount = threadCount;
+        this.intervalSeconds = intervalSeconds;
+        this.resultsWriter = resultsWriter;
+        this.recordIntervalSeconds = Objects.isNull(resultsWriter) ? intervalSeconds
+                : Math.max(1, Math.min(recordIntervalSeconds, intervalSeconds));
+        this.printed = new Histogram[Utility.OPERATIONS.length];
+        for (int i = 0; i < printed.length; i++) {
+            printed[i] = new Histogram(LatencyRecorder.HIGHEST_TRACKABLE_NANOS, LatencyRecorder.SIGNIFICANT_DIGITS);
+        }
+        this.latencyRecorder = latencyRecorder;
+        this.statistics = statistics;
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Starts reporting
+     */
+    public synchronized void start() {
+        startNanos = System.nanoTime();
+        lastIntervalNanos = startNanos;
+        lastSnapshot = statistics.snapshot();
+        firstTelemetry = telemetry.snapshot();
+        lastTelemetry = firstTelemetry;
+        lastRecordNanos = startNanos;
+        lastRecordSnapshot = lastSnapshot;
+        lastRecordTelemetry = firstTelemetry;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "interval-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> reportInterval(false), recordIntervalSeconds, recordIntervalSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops reporting, reports the last partial interval and the summary of the whole run
+     *
+     * @throws InterruptedException If interrupted while waiting for the reporter thread
+     */
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        reportInterval(true);
+        synchronized (this) {
+            double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+            Histogram[] total = latencyRecorder.getTotal();
+            RunStatistics.Snapshot snapshot = statistics.snapshot();
+            RuntimeTelemetry.Snapshot runtime = telemetry.snapshot().minus(firstTelemetry);
+            System.out.println("ThreadCount: " + threadCount + " Summary:");
+            for (int i = 0; i < total.length; i++) {
+                System.out.println("  " + LatencyRecorder.format(Utility.OPERATIONS[i], total[i], elapsedSeconds));
+                System.out.println("  " + snapshot.format(i));
+                System.out.println(String.format("  %-22s goodput=%.1f/sec, retries=%d, aborts=%d",
+                        Utility.OPERATIONS[i], snapshot.getSuccesses(i) / Math.max(elapsedSeconds, 1e-9),
+                        TransactionExecutor.getRetries(i), TransactionExecutor.getAborts(i)));
+                System.out.println("  " + runtime.format(i));
+            }
+            System.out.println("  " + runtime.formatRuntime(elapsedSeconds));
+        }
+    }
+
+    /**
+     * Takes the record interval, writes its records and prints once the printed interval is over
+     *
+     * @param last true for the partial interval at the end of the run, which is always printed
+     */
+    private synchronized void reportInterval(boolean last) {
+        long now = System.nanoTime();
+        Histogram[] interval = latencyRecorder.nextInterval();
+        RunStatistics.Snapshot snapshot = statistics.snapshot();
+        RuntimeTelemetry.Snapshot runtimeSnapshot = telemetry.snapshot();
+        for (int i = 0; i < interval.length; i++) {
+            printed[i].add(interval[i]);
+        }
+        if (!Objects.isNull(resultsWriter)) {
+            double recordSeconds = (now - lastRecordNanos) / 1e9;
+            RunStatistics.Snapshot recordDelta = snapshot.minus(lastRecordSnapshot);
+            RuntimeTelemetry.Snapshot recordRuntime = runtimeSnapshot.minus(lastRecordTelemetry);
+            for (int i = 0; i < interval.length; i++) {
+                resultsWriter.write(ResultsWriter.intervalRecord(profileName, threadCount, (now - startNanos) / 1e9,
+                        recordSeconds, i, interval[i], recordDelta, recordRuntime));
+            }
+            lastRecordNanos = now;
+            lastRecordSnapshot = snapshot;
+            lastRecordTelemetry = runtimeSnapshot;
+        }
+        // 100ms slack for scheduling jitter of the record ticks
+        if (!last && now - lastIntervalNanos < TimeUnit.SECONDS.toNanos(intervalSeconds) - 100_000_000L) {
+            return;
+        }
+        double elapsedSeconds = (now - lastIntervalNanos) / 1e9;
+        lastIntervalNanos = now;
+        RunStatistics.Snapshot delta = snapshot.minus(lastSnapshot);
+        lastSnapshot = snapshot;
+        RuntimeTelemetry.Snapshot runtime = runtimeSnapshot.minus(lastTelemetry);
+        lastTelemetry = runtimeSnapshot;
+        System.out.println("ThreadCount: " + threadCount + " Interval at "
+                + Math.round((now - startNanos) / 1e9) + "s:");
+        for (int i = 0; i < interval.length; i++) {
+            System.out.println("  " + LatencyRecorder.format(Utility.OPERATIONS[i], printed[i], elapsedSeconds));
+            System.out.println("  " + delta.format(i));
+            System.out.println("  " + runtime.format(i));
+        }
+        System.out.println("  " + runtime.formatRuntime(elapsedSeconds));
+        for (Histogram histogram : printed) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses keys 1..itemCount following a distribution. Everything that depends only on
+ * the parameters is computed when the distribution is created, so choosing a key
+ * allocates nothing and is safe to call from any thread.
+ * Specifications parsed by parse:
+ * uniform, zipfian[:theta], hotspot[:hotSetFraction[:hotOperationFraction]], latest[:theta]
+ * Distributions of the same keys share a KeySpace whose highest key grows as rows are inserted;
+ * only latest follows it, the others keep choosing among the keys that existed when they were created.
+ *
+ * @author Abhishek Inamdar
+ */
+public abstract class KeyDistribution {
+    static final double DEFAULT_THETA = 0.99;
+    static final double DEFAULT_HOT_SET_FRACTION = 0.2;
+    static final double DEFAULT_HOT_OPERATION_FRACTION = 0.8;
+
+    /**
+     * Keys 1..maxKey of a table, maxKey grows when rows with higher keys are inserted
+     */
+    public static final class KeySpace {
+        private final AtomicInteger maxKey;
+
+        public KeySpace(int initialMaxKey) {
+            if (initialMaxKey < 1) {
+                throw new IllegalArgumentException("itemCount must be at least 1: " + initialMaxKey);
+            }
+            maxKey = new AtomicInteger(initialMaxKey);
+        }
+
+        public int getMaxKey() {
+            return maxKey.get();
+        }
+
+        /**
+         * Records an inserted key, called after the insert committed
+         *
+         * @param key Inserted key
+         */
+        public void advance(int key) {
+            maxKey.accumulateAndGet(key, Math::max);
+        }
+    }
+
+    protected final KeySpace keySpace;
+    protected final int itemCount;
+
+    protected KeyDistribution(KeySpace keySpace) {
+        this.keySpace = keySpace;
+        this.itemCount = keySpace.getMaxKey();
+    }
+
+    /**
+     * @return next key between 1 and itemCount, both inclusive
+     */
+    public abstract int next();
+
+    /**
+     * Returns key for a new row. Only latest proposes the key after the current highest one,
+     * the other distributions keep choosing existing keys
+     *
+     * @return key to insert
+     */
+    public int nextNewKey() {
+        return next();
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public KeySpace getKeySpace() {
+        return keySpace;
+    }
+
+    /**
+     * Creates distribution from its specification over its own key space
+     *
+     * @param spec      Distribution name followed by its parameters separated by ':'
+     * @param itemCount Number of keys
+     * @return KeyDistribution object
+     */
+    public static KeyDistribution parse(String spec, int itemCount) {
+        return parse(spec, new KeySpace(itemCount));
+    }
+
+    /**
+     * Creates distribution from its specification
+     *
+     * @param spec     Distribution name followed by its parameters separated by ':'
+     * @param keySpace Keys to choose from, shared with the other distributions of the same table
+     * @return KeyDistribution object
+     */
+    public static KeyDistribution parse(String spec, KeySpace keySpace) {
+        String[] parts = spec.trim().toLowerCase().split(":");
+        switch (parts[0]) {
+            case "uniform":
+                return new Uniform(keySpace);
+            case "zipfian":
+                return new Zipfian(keySpace, parameter(parts, 1, DEFAULT_THETA), true);
+            case "hotspot":
+                return new Hotspot(keySpace, parameter(parts, 1, DEFAULT_HOT_SET_FRACTION),
+                        parameter(parts, 2, DEFAULT_HOT_OPERATION_FRACTION));
+            case "latest":
+                return new Latest(keySpace, parameter(parts, 1, DEFAULT_THETA));
+            default:
+                throw new IllegalArgumentException("Unknown key distribution " + spec);
+        }
+    }
+
+    private static double parameter(String[] parts, int index, double defaultValue) {
+        return parts.length > index ? Double.parseDouble(parts[index]) : defaultValue;
+    }
+
+    /**
+     * Every key is equally likely
+     */
+    static final class Uniform extends KeyDistribution {
+        Uniform(KeySpace keySpace) {
+            super(keySpace);
+        }
+
+        @Override
+        public int next() {
+            return ThreadLocalRandom.current().nextInt(itemCount) + 1;
+        }
+
+        @Override
+        public String toString() {
+            return "uniform";
+        }
+    }
+
+    /**
+     * Zipfian distribution of popularity ranks (Gray et al., "Quickly generating
+     * billion-record synthetic databases"). Rank 1 is the most popular.
+     * When scrambled, ranks are spread over the key space with a bijective affine map,
+     * so that hot keys do not share heap and index pages.
+     */
+    static final class Zipfian extends KeyDistribution {
+        private final double theta;
+        private final double zetaN;
+        private final double alpha;
+        private final double eta;
+        private final double secondRankThreshold;
+        private final boolean scrambled;
+        private final long multiplier;
+
+        Zipfian(KeySpace keySpace, double theta, boolean scrambled) {
+            super(keySpace);
+            if (!(theta > 0 && theta < 1)) {
+                throw new IllegalArgumentException("theta must be between 0 and 1 exclusive: " + theta);
+            }
+            this.theta = theta;
+            this.scrambled = scrambled;
+            double sum = 0;
+            for (int i = 1; i <= itemCount; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            zetaN = sum;
+            double zeta2 = 1 + 1 / Math.pow(2, theta);
+            alpha = 1 / (1 - theta);
+            eta = (1 - Math.pow(2.0 / itemCount, 1 - theta)) / (1 - zeta2 / zetaN);
+            secondRankThreshold = 1 + Math.pow(0.5, theta);
+            long candidate = (long) (itemCount * 0.6180339887) | 1;
+            while (gcd(candidate, itemCount) != 1) {
+                candidate += 2;
+            }
+            multiplier = candidate;
+        }
+
+        /**
+         * @return popularity rank between 1 and itemCount
+         */
+        int nextRank() {
+            double u = ThreadLocalRandom.current().nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 1;
+            }
+            if (uz < secondRankThreshold) {
+                return 2;
+            }
+            long rank = 1 + (long) (itemCount * Math.pow(eta * u - eta + 1, alpha));
+            return (int) Math.min(rank, itemCount);
+        }
+
+        @Override
+        public int next() {
+            int rank = nextRank();
+            if (!scrambled) {
+                return rank;
+            }
+            return (int) ((multiplier * (rank - 1)) % itemCount) + 1;
+        }
+
+        private static long gcd(long a, long b) {
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+
+        @Override
+        public String toString() {
+            return "zipfian:" + theta;
+        }
+    }
+
+    /**
+     * hotOperationFraction of the keys chosen fall in the first hotSetFraction of the keys
+     */
+    static final class Hotspot extends KeyDistribution {
+        private final int hotCount;
+        private final double hotOperationFraction;
+
+        Hotspot(KeySpace keySpace, double hotSetFraction, double hotOperationFraction) {
+            super(keySpace);
+            if (hotSetFraction <= 0 || hotSetFraction > 1 || hotOperationFraction < 0 || hotOperationFraction > 1) {
+                throw new IllegalArgumentException("Fractions must be between 0 and 1");
+            }
+            this.hotCount = (int) Math.max(1, Math.round(itemCount * hotSetFraction));
+            this.hotOperationFraction = hotOperationFraction;
+        }
+
+        @Override
+        public int next() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (hotCount == itemCount || random.nextDouble() < hotOperationFraction) {
+                return random.nextInt(hotCount) + 1;
+            }
+            return hotCount + random.nextInt(itemCount - hotCount) + 1;
+        }
+
+        @Override
+        public String toString() {
+            return "hotspot:" + ((double) hotCount / itemCount) + ":" + hotOperationFraction;
+        }
+    }
+
+    /**
+     * Most recently inserted keys, the highest ones of the key space, are the most popular.
+     * Popularity decays along the Zipfian distribution over the itemCount most recent keys,
+     * so keys inserted during the run become the hottest ones and the oldest fall out of the window
+     */
+    static final class Latest extends KeyDistribution {
+        private final Zipfian ranks;
+
+        Latest(KeySpace keySpace, double theta) {
+            super(keySpace);
+            ranks = new Zipfian(new KeySpace(itemCount), theta, false);
+        }
+
+        @Override
+        public int next() {
+            return keySpace.getMaxKey() - ranks.nextRank() + 1;
+        }
+
+        @Override
+        public int nextNewKey() {
+            return keySpace.getMaxKey() + 1;
+        }
+
+        @Override
+        public String toString() {
+            return "latest:" + ranks.theta;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records operation latencies into HdrHistograms.
+ * Every thread records into its own single writer recorders, which are wait-free
+ * and allocation-free on the recording side. Recorders of all the threads are
+ * merged per operation when an interval is taken.
+ * With thousands of virtual threads per thread recorders would take too much memory,
+ * so in striped mode threads share a fixed number of multi writer recorders instead.
+ *
+ * @author Abhishek Inamdar
+ */
+public class LatencyRecorder {
+    /**
+     * Highest recorded latency, higher values are recorded as this value
+     */
+    static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * Recorders of one thread or of one stripe, one per operation
+     */
+    private static class ThreadRecorders {
+        // Exactly one of these is set
+        private final SingleWriterRecorder[] recorders;
+        private final Recorder[] sharedRecorders;
+        private final Histogram[] recycled = new Histogram[Utility.OPERATIONS.length];
+
+        private ThreadRecorders(boolean shared) {
+            recorders = shared ? null : new SingleWriterRecorder[Utility.OPERATIONS.length];
+            sharedRecorders = shared ? new Recorder[Utility.OPERATIONS.length] : null;
+            for (int i = 0; i < Utility.OPERATIONS.length; i++) {
+                if (shared) {
+                    sharedRecorders[i] = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+                } else {
+                    recorders[i] = new SingleWriterRecorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+                }
+            }
+        }
+
+        private void record(int operationIndex, long value) {
+            if (Objects.isNull(sharedRecorders)) {
+                recorders[operationIndex].recordValue(value);
+            } else {
+                sharedRecorders[operationIndex].recordValue(value);
+            }
+        }
+
+        private Histogram nextInterval(int operationIndex) {
+            recycled[operationIndex] = Objects.isNull(sharedRecorders)
+                    ? recorders[operationIndex].getIntervalHistogram(recycled[operationIndex])
+                    : sharedRecorders[operationIndex].getIntervalHistogram(recycled[operationIndex]);
+            return recycled[operationIndex];
+        }
+    }
+
+    private final List<ThreadRecorders> allRecorders = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ThreadRecorders> threadRecorders = ThreadLocal.withInitial(() -> {
+        ThreadRecorders recorders = new ThreadRecorders(false);
+        allRecorders.add(recorders);
+        return recorders;
+    });
+    private final ThreadRecorders[] stripes;
+
+    private final Histogram[] interval = newHistograms();
+    private final Histogram[] total = newHistograms();
+
+    /**
+     * Creates recorder with recorders per thread
+     */
+    public LatencyRecorder() {
+        this(0);
+    }
+
+    /**
+     * Creates recorder
+     *
+     * @param stripeCount Number of shared recorders, 0 for recorders per thread
+     */
+    public LatencyRecorder(int stripeCount) {
+        stripes = new ThreadRecorders[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ThreadRecorders(true);
+            allRecorders.add(stripes[i]);
+        }
+    }
+
+    /**
+     * Records latency of an operation
+     *
+     * @param operationIndex Index of the operation in Utility.OPERATIONS
+     * @param latencyNanos   Latency in nanoseconds
+     */
+    public void record(int operationIndex, long latencyNanos) {
+        ThreadRecorders recorders = stripes.length == 0 ? threadRecorders.get()
+                : stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+        recorders.record(operationIndex, Math.max(0, Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS)));
+    }
+
+    /**
+     * Merges everything recorded since the previous interval.
+     * Returned histograms are reused by the next call.
+     *
+     * @return interval histograms indexed as Utility.OPERATIONS
+     */
+    public synchronized Histogram[] nextInterval() {
+        for (Histogram histogram : interval) {
+            histogram.reset();
+        }
+        for (ThreadRecorders recorders : allRecorders) {
+            for (int i = 0; i < interval.length; i++) {
+                interval[i].add(recorders.nextInterval(i));
+            }
+        }
+        for (int i = 0; i < interval.length; i++) {
+            total[i].add(interval[i]);
+        }
+        return interval;
+    }
+
+    /**
+     * Returns histograms of everything merged so far
+     *
+     * @return total histograms indexed as Utility.OPERATIONS
+     */
+    public synchronized Histogram[] getTotal() {
+        return total;
+    }
+
+    /**
+     * Formats throughput and latency percentiles of a histogram
+     *
+     * @param operation      Operation name
+     * @param histogram      Latency histogram
+     * @param elapsedSeconds Time span of the histogram
+     * @return formatted line
+     */
+    public static String format(String operation, Histogram histogram, double elapsedSeconds) {
+        return String.format("%-22s ops=%d, ops/sec=%.1f, p50=%.3fms, p90=%.3fms, p99=%.3fms, p99.9=%.3fms, max=%.3fms",
+                operation, histogram.getTotalCount(), histogram.getTotalCount() / Math.max(elapsedSeconds, 1e-9),
+                toMillis(histogram.getValueAtPercentile(50)), toMillis(histogram.getValueAtPercentile(90)),
+                toMillis(histogram.getValueAtPercentile(99)), toMillis(histogram.getValueAtPercentile(99.9)),
+                toMillis(histogram.getMaxValue()));
+    }
+
+    static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static Histogram[] newHistograms() {
+        Histogram[] histograms = new Histogram[Utility.OPERATIONS.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        }
+        return histograms;
+    }
+}
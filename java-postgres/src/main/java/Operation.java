@@ -0,0 +1,49 @@
+/**
+ * Workload operations, in the order of Utility.OPERATIONS
+ *
+ * @author Abhishek Inamdar
+ */
+public enum Operation {
+    CREATE_ACCOUNT(Utility.CREATE_ACCOUNT),
+    ADD_PRODUCT(Utility.ADD_PRODUCT),
+    UPDATE_STOCK_LEVEL(Utility.UPDATE_STOCK_LEVEL),
+    GET_PRODUCT_REVIEWS(Utility.GET_PRODUCT_REVIEWS),
+    GET_AVERAGE_RATING(Utility.GET_AVERAGE_RATING),
+    SUBMIT_ORDER(Utility.SUBMIT_ORDER),
+    POST_REVIEW(Utility.POST_REVIEW),
+    GET_AVERAGE_PRODUCT_RATING(Utility.GET_AVERAGE_PRODUCT_RATING);
+
+    private static final Operation[] BY_INDEX = new Operation[Utility.OPERATIONS.length];
+
+    static {
+        for (Operation operation : values()) {
+            BY_INDEX[operation.index] = operation;
+        }
+    }
+
+    private final String operationName;
+    private final int index;
+
+    Operation(String operationName) {
+        this.operationName = operationName;
+        this.index = Utility.operationIndex(operationName);
+    }
+
+    /**
+     * @return name used in properties and reports
+     */
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /**
+     * @return index in Utility.OPERATIONS
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public static Operation fromIndex(int index) {
+        return BY_INDEX[index];
+    }
+}
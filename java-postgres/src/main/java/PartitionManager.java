@@ -0,0 +1,134 @@
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manages monthly range partitions of ORDERS and ORDER_DETAILS by ORDER_DATE.
+ * Enabled with ORDERS_PARTITIONING==monthly; partitions are created from the month of
+ * MIN_ORDER_DATE up to PARTITION_MONTHS_AHEAD months after MAX_ORDER_DATE.
+ * ORDER_DETAILS carries ORDER_DATE and is partitioned the same way, so an old month is
+ * removed by detaching both partitions, which moves no data.
+ * There is no default partition, so creating new partitions never scans existing rows.
+ * Run with "create [yyyy-MM]" to create partitions ahead, "detach yyyy-MM [drop]" to detach a month.
+ *
+ * @author Abhishek Inamdar
+ */
+public class PartitionManager {
+    static final String[] PARTITIONED_TABLES = {"ORDERS", "ORDER_DETAILS"};
+    static final String ORDER_DETAILS_FOREIGN_KEY = "ORDER_DETAILS_ORDERS_FK";
+    static final String CREATE_PARTITION =
+            "CREATE TABLE IF NOT EXISTS %1$s_%2$s PARTITION OF %1$s FOR VALUES FROM ('%3$s') TO ('%4$s')";
+    static final String DETACH_PARTITION = "ALTER TABLE %1$s DETACH PARTITION %1$s_%2$s";
+    static final String DROP_DETACHED_FOREIGN_KEY =
+            "ALTER TABLE ORDER_DETAILS_%1$s DROP CONSTRAINT IF EXISTS " + ORDER_DETAILS_FOREIGN_KEY;
+    static final String DROP_PARTITION = "DROP TABLE IF EXISTS %1$s_%2$s";
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    public static void main(String[] args) {
+        PartitionManager manager = new PartitionManager();
+        try {
+            if (args.length >= 2 && "detach".equalsIgnoreCase(args[0])) {
+                YearMonth month = YearMonth.parse(args[1]);
+                manager.detachPartitions(month, args.length > 2 && "drop".equalsIgnoreCase(args[2]));
+                System.out.println("Detached partitions of " + month);
+            } else {
+                YearMonth last = args.length >= 2 ? YearMonth.parse(args[1]) : lastMonth();
+                manager.createPartitions(firstMonth(), last);
+                System.out.println("Partitions exist from " + firstMonth() + " to " + last);
+            }
+        } catch (SQLException e) {
+            System.err.println("Partition maintenance failed " + e.getSQLState() + e.getMessage());
+        } finally {
+            DBBase.closePool();
+        }
+    }
+
+    /**
+     * @return true if ORDERS and ORDER_DETAILS are partitioned
+     */
+    public static boolean isEnabled() {
+        return "monthly".equalsIgnoreCase(DBBase.getProperty("ORDERS_PARTITIONING", "none"));
+    }
+
+    public static YearMonth firstMonth() {
+        return YearMonth.from(new Timestamp(Utility.MIN_ORDER_DATE).toLocalDateTime());
+    }
+
+    public static YearMonth lastMonth() {
+        return YearMonth.from(new Timestamp(Utility.MAX_ORDER_DATE).toLocalDateTime())
+                .plusMonths(DBBase.getIntProperty("PARTITION_MONTHS_AHEAD", 3));
+    }
+
+    /**
+     * Statements creating partitions of both tables for months from..to (both inclusive)
+     *
+     * @param from First month
+     * @param to   Last month
+     * @return CREATE TABLE statements
+     */
+    static List<String> createStatements(YearMonth from, YearMonth to) {
+        List<String> statements = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            for (String table : PARTITIONED_TABLES) {
+                statements.add(String.format(CREATE_PARTITION, table, month.format(SUFFIX),
+                        month.atDay(1), month.plusMonths(1).atDay(1)));
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Statements dropping tables left over from partitions detached earlier.
+     * Only valid while the partitioned tables do not exist
+     *
+     * @param from First month
+     * @param to   Last month
+     * @return DROP TABLE statements
+     */
+    static List<String> dropStatements(YearMonth from, YearMonth to) {
+        List<String> statements = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            // Details first, a detached details partition may still reference the orders one
+            statements.add(String.format(DROP_PARTITION, "ORDER_DETAILS", month.format(SUFFIX)));
+            statements.add(String.format(DROP_PARTITION, "ORDERS", month.format(SUFFIX)));
+        }
+        return statements;
+    }
+
+    /**
+     * Creates missing partitions for months from..to (both inclusive)
+     *
+     * @param from First month
+     * @param to   Last month
+     * @throws SQLException If an SQL Error occurs
+     */
+    public void createPartitions(YearMonth from, YearMonth to) throws SQLException {
+        new DBSetup().execute(createStatements(from, to).toArray(new String[0]));
+    }
+
+    /**
+     * Detaches partitions of the month from both tables. Details are detached first
+     * and their foreign key dropped, so that detaching the orders partition passes
+     * the foreign key check. Detached tables keep their rows unless dropped
+     *
+     * @param month Month to detach
+     * @param drop  true to drop the detached tables
+     * @throws SQLException If an SQL Error occurs
+     */
+    public void detachPartitions(YearMonth month, boolean drop) throws SQLException {
+        String suffix = month.format(SUFFIX);
+        List<String> statements = new ArrayList<>();
+        statements.add(String.format(DETACH_PARTITION, "ORDER_DETAILS", suffix));
+        statements.add(String.format(DROP_DETACHED_FOREIGN_KEY, suffix));
+        statements.add(String.format(DETACH_PARTITION, "ORDERS", suffix));
+        if (drop) {
+            statements.add(String.format(DROP_PARTITION, "ORDER_DETAILS", suffix));
+            statements.add(String.format(DROP_PARTITION, "ORDERS", suffix));
+        }
+        new DBSetup().execute(statements.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,93 @@
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads pinned to their carrier thread, i.e. blocked inside a
+ * synchronized block or native frame, using the jdk.VirtualThreadPinned JFR event.
+ * Pinned time is aggregated by the innermost application or driver frame.
+ * On JVMs without the event nothing is reported.
+ *
+ * @author Abhishek Inamdar
+ */
+public class PinnedThreadMonitor {
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    static final int TOP_FRAMES = 5;
+
+    private final RecordingStream stream;
+    private final LongAdder pinnedCount = new LongAdder();
+    private final LongAdder pinnedNanos = new LongAdder();
+    private final Map<String, LongAdder> pinnedNanosByFrame = new ConcurrentHashMap<>();
+
+    /**
+     * Starts listening for pinned events
+     *
+     * @param threshold Shortest pinning reported, JFR default is 20 ms
+     */
+    public PinnedThreadMonitor(Duration threshold) {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    /**
+     * Starts monitor configured with PINNED_THRESHOLD_MS property
+     *
+     * @return PinnedThreadMonitor object
+     */
+    public static PinnedThreadMonitor fromProperties() {
+        return new PinnedThreadMonitor(Duration.ofMillis(DBBase.getLongProperty("PINNED_THRESHOLD_MS", 20)));
+    }
+
+    private void onPinned(RecordedEvent event) {
+        long nanos = event.getDuration().toNanos();
+        pinnedCount.increment();
+        pinnedNanos.add(nanos);
+        pinnedNanosByFrame.computeIfAbsent(topFrame(event.getStackTrace()), frame -> new LongAdder()).add(nanos);
+    }
+
+    /**
+     * Returns first frame outside of the JDK, which is where the pinning monitor was taken
+     */
+    private static String topFrame(RecordedStackTrace stackTrace) {
+        if (Objects.isNull(stackTrace)) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "jdk";
+    }
+
+    /**
+     * Stops listening and returns the report
+     *
+     * @return pinned count, total pinned time and the frames pinning the longest
+     */
+    public String stop() {
+        stream.close();
+        List<String> top = pinnedNanosByFrame.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(TOP_FRAMES)
+                .map(e -> e.getKey() + "=" + String.format("%.1fms", e.getValue().sum() / 1e6))
+                .collect(Collectors.toList());
+        return "PinnedThreads{count=" + pinnedCount.sum() +
+                ", pinnedMs=" + String.format("%.1f", pinnedNanos.sum() / 1e6) +
+                ", top=" + top +
+                '}';
+    }
+}
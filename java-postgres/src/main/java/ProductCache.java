@@ -0,0 +1,206 @@
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of ProductInformation by product ID, bounded by number of entries
+ * and estimated size in bytes. Entries are split over segments, each segment evicts
+ * its least recently used entries.
+ * Write paths invalidate products after their transaction committed. A load that
+ * overlapped with an invalidation of its segment is not cached, so a value read
+ * before a commit can never be cached after the invalidation of that commit.
+ * Cached objects are shared and must not be modified.
+ *
+ * @author Abhishek Inamdar
+ */
+public class ProductCache {
+    private static final int SEGMENTS = 64;
+
+    /**
+     * Loads value on a cache miss
+     */
+    public interface Loader {
+        ProductInformation load(int productId) throws SQLException;
+    }
+
+    private static ProductCache defaultCache = null;
+    private static boolean defaultCacheCreated = false;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Part of the cache guarded by its own lock
+     */
+    private class Segment {
+        private final long maxEntries;
+        private final long maxBytes;
+        private long bytes = 0;
+        // Incremented by every invalidation in this segment
+        private long epoch = 0;
+        private final LinkedHashMap<Integer, CachedProduct> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private Segment(long maxEntries, long maxBytes) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+        }
+
+        private void evict() {
+            Iterator<Map.Entry<Integer, CachedProduct>> iterator = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+                bytes -= iterator.next().getValue().size;
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static class CachedProduct {
+        private final ProductInformation product;
+        private final long size;
+
+        private CachedProduct(ProductInformation product, long size) {
+            this.product = product;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Creates cache
+     *
+     * @param maxEntries Maximum number of cached products
+     * @param maxBytes   Maximum estimated size of cached products
+     */
+    public ProductCache(long maxEntries, long maxBytes) {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maxEntries / SEGMENTS), Math.max(1, maxBytes / SEGMENTS));
+        }
+    }
+
+    /**
+     * Returns cache configured with PRODUCT_CACHE_ENABLED, PRODUCT_CACHE_MAX_ENTRIES
+     * and PRODUCT_CACHE_MAX_BYTES properties
+     *
+     * @return ProductCache object or null if the cache is disabled
+     */
+    public static synchronized ProductCache getDefault() {
+        if (!defaultCacheCreated) {
+            defaultCacheCreated = true;
+            if (Boolean.parseBoolean(DBBase.getProperty("PRODUCT_CACHE_ENABLED", "false"))) {
+                defaultCache = new ProductCache(DBBase.getLongProperty("PRODUCT_CACHE_MAX_ENTRIES", 10_000),
+                        DBBase.getLongProperty("PRODUCT_CACHE_MAX_BYTES", 64L * 1024 * 1024));
+            }
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Returns cached product or loads and caches it
+     *
+     * @param productId Product ID
+     * @param loader    Loads the product on a miss
+     * @return product information, null if product does not exist
+     * @throws SQLException If loader fails
+     */
+    public ProductInformation get(int productId, Loader loader) throws SQLException {
+        Segment segment = segmentOf(productId);
+        long epoch;
+        synchronized (segment) {
+            CachedProduct cached = segment.entries.get(productId);
+            if (!Objects.isNull(cached)) {
+                hits.increment();
+                return cached.product;
+            }
+            epoch = segment.epoch;
+        }
+        misses.increment();
+        ProductInformation product = loader.load(productId);
+        if (!Objects.isNull(product)) {
+            synchronized (segment) {
+                if (segment.epoch == epoch) {
+                    CachedProduct cached = new CachedProduct(product, estimateSize(product));
+                    CachedProduct previous = segment.entries.put(productId, cached);
+                    segment.bytes += cached.size - (Objects.isNull(previous) ? 0 : previous.size);
+                    segment.evict();
+                }
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Removes the product, called after the transaction changing it committed
+     *
+     * @param productId Product ID
+     */
+    public void invalidate(int productId) {
+        Segment segment = segmentOf(productId);
+        synchronized (segment) {
+            segment.epoch++;
+            CachedProduct removed = segment.entries.remove(productId);
+            if (!Objects.isNull(removed)) {
+                segment.bytes -= removed.size;
+            }
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * Removes all the products, used when tables are recreated
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.epoch++;
+                segment.entries.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public String getStats() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return "ProductCache{hits=" + hitCount +
+                ", misses=" + getMisses() +
+                ", evictions=" + evictions.sum() +
+                ", invalidations=" + invalidations.sum() +
+                ", hitRate=" + (total == 0 ? 0.0 : (double) hitCount / total) +
+                '}';
+    }
+
+    /**
+     * Rough heap size of the product and its reviews
+     */
+    static long estimateSize(ProductInformation product) {
+        long size = 96 + 2L * length(product.getName()) + 2L * length(product.getDescription());
+        for (Review review : product.getReviews()) {
+            size += 120 + 2L * length(review.getUserName()) + 2L * length(review.getReviewText());
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return Objects.isNull(value) ? 0 : value.length();
+    }
+
+    private Segment segmentOf(int productId) {
+        int hash = productId * 0x9E3779B9;
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+}
@@ -1,4 +1,3 @@
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -52,50 +51,3 @@ public class ProductInformation {
                 '}';
     }
 }
-
-class Review {
-    private String userName;
-    private int productId;
-    private String reviewText;
-    private double rating;
-    private LocalDateTime reviewDate;
-
-    public Review(String userName, int productId, String reviewText, double rating, LocalDateTime reviewDate) {
-        this.userName = userName;
-        this.productId = productId;
-        this.reviewText = reviewText;
-        this.rating = rating;
-        this.reviewDate = reviewDate;
-    }
-
-    public String getUserName() {
-        return userName;
-    }
-
-    public int getProductId() {
-        return productId;
-    }
-
-    public String getReviewText() {
-        return reviewText;
-    }
-
-    public double getRating() {
-        return rating;
-    }
-
-    public LocalDateTime getReviewDate() {
-        return reviewDate;
-    }
-
-    @Override
-    public String toString() {
-        return "Review{" +
-                "userName='" + userName + '\'' +
-                ", productId='" + productId + '\'' +
-                ", reviewText='" + reviewText + '\'' +
-                ", rating=" + rating +
-                ", reviewDate=" + reviewDate +
-                '}';
-    }
-}
@@ -0,0 +1,498 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client side statistics of every SQL statement, collected by wrapping the physical
+ * connections of the pool (QUERY_INSTRUMENTATION property).
+ * Per SQL text it aggregates executions, errors, execution time, rows, bytes of the values
+ * read and round trips into LongAdders, so recording never takes a lock.
+ * Executions slower than SLOW_QUERY_MS are kept with their bind parameters in a ring of
+ * SLOW_QUERY_SAMPLES entries; with SLOW_QUERY_EXPLAIN the plan of a sample is fetched by
+ * a background thread on its own connection, never on the worker's.
+ * Round trips count executions, commits and rollbacks, plus one per fetchSize rows read
+ * when a fetch size is set.
+ *
+ * @author Abhishek Inamdar
+ */
+public class QueryInstrumentation {
+    static final String COMMIT = "COMMIT";
+    static final String ROLLBACK = "ROLLBACK";
+    static final int TOP_STATEMENTS = 10;
+
+    private static final Map<String, SqlStats> stats = new ConcurrentHashMap<>();
+    private static final long slowQueryNanos =
+            TimeUnit.MILLISECONDS.toNanos(DBBase.getLongProperty("SLOW_QUERY_MS", 50));
+    private static final AtomicReferenceArray<SlowQuery> slowQueries =
+            new AtomicReferenceArray<>(Math.max(1, DBBase.getIntProperty("SLOW_QUERY_SAMPLES", 32)));
+    private static final AtomicLong slowQueryCount = new AtomicLong();
+    private static final boolean explainSlowQueries =
+            Boolean.parseBoolean(DBBase.getProperty("SLOW_QUERY_EXPLAIN", "false"));
+    private static ThreadPoolExecutor explainer = null;
+    private static Connection explainConnection = null;
+
+    /**
+     * Aggregates of one SQL text
+     */
+    public static class SqlStats {
+        private final String sql;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder roundTrips = new LongAdder();
+
+        private SqlStats(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        private void reset() {
+            executions.reset();
+            errors.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            rows.reset();
+            bytes.reset();
+            roundTrips.reset();
+        }
+
+        @Override
+        public String toString() {
+            long count = Math.max(1, getExecutions());
+            return String.format("executions=%d, errors=%d, avg=%.3fms, max=%.3fms, rows/exec=%.1f, "
+                            + "bytes/exec=%.0f, roundTrips/exec=%.2f, sql=%s",
+                    getExecutions(), errors.sum(), getTotalNanos() / 1e6 / count, maxNanos.get() / 1e6,
+                    (double) rows.sum() / count, (double) bytes.sum() / count, (double) roundTrips.sum() / count,
+                    sql.length() > 120 ? sql.substring(0, 120) + "..." : sql);
+        }
+    }
+
+    /**
+     * Slow execution with its bind parameters
+     */
+    public static class SlowQuery {
+        private final String sql;
+        private final Object[] binds;
+        private final long nanos;
+        private final LocalDateTime time = LocalDateTime.now();
+        private final String thread = Thread.currentThread().getName();
+        private volatile String plan = null;
+
+        private SlowQuery(String sql, Object[] binds, long nanos) {
+            this.sql = sql;
+            this.binds = binds;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %.3fms binds=%s sql=%s%s", time, thread, nanos / 1e6,
+                    Arrays.toString(binds), sql, Objects.isNull(plan) ? "" : "\n    " + plan.replace("\n", "\n    "));
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(DBBase.getProperty("QUERY_INSTRUMENTATION", "false"));
+    }
+
+    /**
+     * Wraps the connection so that statements created from it are instrumented
+     *
+     * @param physical Physical connection
+     * @return instrumented Connection
+     */
+    public static Connection instrument(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(QueryInstrumentation.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(physical));
+    }
+
+    static SqlStats statsOf(String sql) {
+        return stats.computeIfAbsent(sql, SqlStats::new);
+    }
+
+    /**
+     * Records one execution
+     *
+     * @param sqlStats   Aggregates of the statement
+     * @param nanos      Execution time
+     * @param rows       Rows affected, returned rows are added while they are read
+     * @param roundTrips Round trips of the execution
+     * @param failed     true if execution threw
+     * @param binds      Bind parameters, copied if the execution is slow
+     * @param bindCount  Number of bind parameters set
+     */
+    static void record(SqlStats sqlStats, long nanos, long rows, long roundTrips, boolean failed, Object[] binds,
+                       int bindCount) {
+        sqlStats.executions.increment();
+        sqlStats.totalNanos.add(nanos);
+        sqlStats.maxNanos.accumulate(nanos);
+        sqlStats.roundTrips.add(roundTrips);
+        if (rows > 0) {
+            sqlStats.rows.add(rows);
+        }
+        if (failed) {
+            sqlStats.errors.increment();
+        }
+        if (nanos >= slowQueryNanos) {
+            SlowQuery slowQuery = new SlowQuery(sqlStats.sql,
+                    Objects.isNull(binds) ? new Object[0] : Arrays.copyOf(binds, bindCount), nanos);
+            long index = slowQueryCount.getAndIncrement();
+            slowQueries.set((int) (index % slowQueries.length()), slowQuery);
+            if (explainSlowQueries && !COMMIT.equals(sqlStats.sql) && !ROLLBACK.equals(sqlStats.sql)) {
+                explain(slowQuery);
+            }
+        }
+    }
+
+    /**
+     * Queues EXPLAIN of the slow query, dropped if the explainer is busy
+     */
+    private static void explain(SlowQuery slowQuery) {
+        String verb = slowQuery.sql.trim().split("\\s+", 2)[0].toUpperCase();
+        if (!Arrays.asList("SELECT", "INSERT", "UPDATE", "DELETE", "WITH").contains(verb)) {
+            return;
+        }
+        ThreadPoolExecutor executor;
+        synchronized (QueryInstrumentation.class) {
+            if (Objects.isNull(explainer)) {
+                explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(16),
+                        r -> {
+                            Thread thread = new Thread(r, "slow-query-explainer");
+                            thread.setDaemon(true);
+                            return thread;
+                        }, new ThreadPoolExecutor.DiscardPolicy());
+            }
+            executor = explainer;
+        }
+        executor.execute(() -> slowQuery.plan = fetchPlan(slowQuery));
+    }
+
+    /**
+     * Runs EXPLAIN with the sampled binds on the explainer connection, rolled back
+     */
+    private static String fetchPlan(SlowQuery slowQuery) {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            if (Objects.isNull(explainConnection) || explainConnection.isClosed()) {
+                explainConnection = DBBase.newDedicatedConnection();
+                explainConnection.setAutoCommit(false);
+            }
+            stmt = explainConnection.prepareStatement("EXPLAIN " + slowQuery.sql);
+            for (int i = 0; i < slowQuery.binds.length; i++) {
+                stmt.setObject(i + 1, slowQuery.binds[i]);
+            }
+            rs = stmt.executeQuery();
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(plan.length() == 0 ? "" : "\n").append(rs.getString(1));
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            return "EXPLAIN failed: " + e.getSQLState() + " " + e.getMessage();
+        } finally {
+            try {
+                if (!Objects.isNull(rs)) {
+                    rs.close();
+                }
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
+                if (!Objects.isNull(explainConnection)) {
+                    explainConnection.rollback();
+                }
+            } catch (SQLException e) {
+                System.err.println("Error closing explain statement " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return aggregates of all the statements
+     */
+    public static List<SqlStats> getSqlStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    /**
+     * @return slow executions sampled so far, oldest first
+     */
+    public static List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> samples = new ArrayList<>();
+        long count = slowQueryCount.get();
+        for (long i = Math.max(0, count - slowQueries.length()); i < count; i++) {
+            SlowQuery sample = slowQueries.get((int) (i % slowQueries.length()));
+            if (!Objects.isNull(sample)) {
+                samples.add(sample);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Zeroes aggregates in place, since open and cached statements keep theirs, and drops the samples
+     */
+    public static void reset() {
+        for (SqlStats sqlStats : stats.values()) {
+            sqlStats.reset();
+        }
+        for (int i = 0; i < slowQueries.length(); i++) {
+            slowQueries.set(i, null);
+        }
+        slowQueryCount.set(0);
+    }
+
+    /**
+     * Returns statements with the highest total time and the latest slow samples
+     *
+     * @return formatted report
+     */
+    public static String getStats() {
+        StringBuilder report = new StringBuilder("QueryInstrumentation{slowQueries=" + slowQueryCount.get() + "}");
+        stats.values().stream()
+                .filter(s -> s.getExecutions() > 0)
+                .sorted(Comparator.comparingLong(SqlStats::getTotalNanos).reversed())
+                .limit(TOP_STATEMENTS)
+                .forEach(s -> report.append("\n  ").append(s));
+        for (SlowQuery slowQuery : getSlowQueries()) {
+            report.append("\n  slow: ").append(slowQuery);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Stops the explainer and closes its connection
+     */
+    public static synchronized void shutdown() {
+        if (!Objects.isNull(explainer)) {
+            explainer.shutdown();
+            try {
+                explainer.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            explainer = null;
+        }
+        if (!Objects.isNull(explainConnection)) {
+            try {
+                explainConnection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing explain connection " + e.getMessage());
+            }
+            explainConnection = null;
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Instruments statements, commits and rollbacks
+     */
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+        private final SqlStats commits = statsOf(COMMIT);
+        private final SqlStats rollbacks = statsOf(ROLLBACK);
+
+        private ConnectionHandler(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return Proxy.newProxyInstance(QueryInstrumentation.class.getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class},
+                            new StatementHandler(QueryInstrumentation.invoke(physical, method, args),
+                                    (String) args[0]));
+                case "createStatement":
+                    return Proxy.newProxyInstance(QueryInstrumentation.class.getClassLoader(),
+                            new Class<?>[]{Statement.class},
+                            new StatementHandler(QueryInstrumentation.invoke(physical, method, args), null));
+                case "commit":
+                    return timed(commits, method, args);
+                case "rollback":
+                    // rollback to a savepoint is a round trip too
+                    return timed(rollbacks, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return QueryInstrumentation.invoke(physical, method, args);
+            }
+        }
+
+        private Object timed(SqlStats sqlStats, Method method, Object[] args) throws Throwable {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = QueryInstrumentation.invoke(physical, method, args);
+                failed = false;
+                return result;
+            } finally {
+                record(sqlStats, System.nanoTime() - start, 0, 1, failed, null, 0);
+            }
+        }
+    }
+
+    /**
+     * Times executions and captures bind parameters of one statement.
+     * Prepared statements know their SQL up front, plain statements get it with every execute
+     */
+    private static class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final SqlStats preparedStats;
+        private Object[] binds = new Object[8];
+        private int bindCount = 0;
+
+        private StatementHandler(Object statement, String sql) {
+            this.statement = (Statement) statement;
+            this.preparedStats = Objects.isNull(sql) ? null : statsOf(sql);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                SqlStats sqlStats = Objects.isNull(args) || args.length == 0 || !(args[0] instanceof String)
+                        ? preparedStats : statsOf((String) args[0]);
+                if (!Objects.isNull(sqlStats)) {
+                    return execute(proxy, sqlStats, method, args);
+                }
+            } else if (name.startsWith("set") && !Objects.isNull(args) && args.length >= 2
+                    && args[0] instanceof Integer && !Objects.isNull(preparedStats)) {
+                bind((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+            } else if ("clearParameters".equals(name)) {
+                Arrays.fill(binds, 0, bindCount, null);
+                bindCount = 0;
+            }
+            return QueryInstrumentation.invoke(statement, method, args);
+        }
+
+        private void bind(int index, Object value) {
+            if (index > binds.length) {
+                binds = Arrays.copyOf(binds, Math.max(index, binds.length * 2));
+            }
+            binds[index - 1] = value;
+            bindCount = Math.max(bindCount, index);
+        }
+
+        private Object execute(Object proxy, SqlStats sqlStats, Method method, Object[] args) throws Throwable {
+            long start = System.nanoTime();
+            boolean failed = true;
+            long rows = 0;
+            try {
+                Object result = QueryInstrumentation.invoke(statement, method, args);
+                failed = false;
+                if (result instanceof ResultSet) {
+                    return Proxy.newProxyInstance(QueryInstrumentation.class.getClassLoader(),
+                            new Class<?>[]{ResultSet.class},
+                            new ResultSetHandler((ResultSet) result, sqlStats, statement.getFetchSize(), proxy));
+                }
+                if (result instanceof Integer || result instanceof Long) {
+                    rows = Math.max(0, ((Number) result).longValue());
+                } else if (result instanceof int[]) {
+                    for (int count : (int[]) result) {
+                        rows += Math.max(0, count);
+                    }
+                }
+                return result;
+            } finally {
+                record(sqlStats, System.nanoTime() - start, rows, 1, failed, binds, bindCount);
+            }
+        }
+    }
+
+    /**
+     * Counts rows, bytes of the values read and extra fetch round trips
+     */
+    private static class ResultSetHandler implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final SqlStats sqlStats;
+        private final int fetchSize;
+        private final Object statementProxy;
+        private long rows = 0;
+
+        private ResultSetHandler(ResultSet resultSet, SqlStats sqlStats, int fetchSize, Object statementProxy) {
+            this.resultSet = resultSet;
+            this.sqlStats = sqlStats;
+            this.fetchSize = fetchSize;
+            this.statementProxy = statementProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("getStatement".equals(name)) {
+                return statementProxy;
+            }
+            Object result = QueryInstrumentation.invoke(resultSet, method, args);
+            if ("next".equals(name)) {
+                if (Boolean.TRUE.equals(result)) {
+                    sqlStats.rows.increment();
+                    if (fetchSize > 0 && ++rows % fetchSize == 0) {
+                        sqlStats.roundTrips.increment();
+                    }
+                }
+            } else if (name.startsWith("get") && !Objects.isNull(args) && !Objects.isNull(result)) {
+                sqlStats.bytes.add(sizeOf(result));
+            }
+            return result;
+        }
+
+        private static long sizeOf(Object value) {
+            if (value instanceof String) {
+                return ((String) value).length();
+            }
+            if (value instanceof byte[]) {
+                return ((byte[]) value).length;
+            }
+            if (value instanceof Integer || value instanceof Float) {
+                return 4;
+            }
+            return 8;
+        }
+    }
+}
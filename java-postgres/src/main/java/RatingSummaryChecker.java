@@ -0,0 +1,130 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+/**
+ * Rebuilds and verifies USER_RATING_SUMMARY and PRODUCT_RATING_SUMMARY against REVIEWS.
+ * Run with "rebuild" argument to rebuild the summaries, otherwise they are only verified.
+ *
+ * @author Abhishek Inamdar
+ */
+public class RatingSummaryChecker {
+    static final String REBUILD_USER_RATING_SUMMARY =
+            "INSERT INTO USER_RATING_SUMMARY(USER_NAME, REVIEW_COUNT, RATING_SUM) " +
+                    " SELECT USER_NAME, COUNT(*), SUM(RATING) FROM REVIEWS GROUP BY USER_NAME ";
+    static final String REBUILD_PRODUCT_RATING_SUMMARY =
+            "INSERT INTO PRODUCT_RATING_SUMMARY(PRODUCT_ID, REVIEW_COUNT, RATING_SUM) " +
+                    " SELECT PRODUCT_ID, COUNT(*), SUM(RATING) FROM REVIEWS GROUP BY PRODUCT_ID ";
+    static final String TRUNCATE_SUMMARIES = "TRUNCATE USER_RATING_SUMMARY, PRODUCT_RATING_SUMMARY";
+    static final String COUNT_USER_MISMATCHES =
+            "SELECT COUNT(*) AS MISMATCHES FROM " +
+                    " (SELECT USER_NAME, COUNT(*) AS REVIEW_COUNT, SUM(RATING) AS RATING_SUM " +
+                    "  FROM REVIEWS GROUP BY USER_NAME) R " +
+                    " FULL JOIN USER_RATING_SUMMARY S ON S.USER_NAME = R.USER_NAME " +
+                    " WHERE R.REVIEW_COUNT IS DISTINCT FROM S.REVIEW_COUNT " +
+                    " OR R.RATING_SUM IS DISTINCT FROM S.RATING_SUM ";
+    static final String COUNT_PRODUCT_MISMATCHES =
+            "SELECT COUNT(*) AS MISMATCHES FROM " +
+                    " (SELECT PRODUCT_ID, COUNT(*) AS REVIEW_COUNT, SUM(RATING) AS RATING_SUM " +
+                    "  FROM REVIEWS GROUP BY PRODUCT_ID) R " +
+                    " FULL JOIN PRODUCT_RATING_SUMMARY S ON S.PRODUCT_ID = R.PRODUCT_ID " +
+                    " WHERE R.REVIEW_COUNT IS DISTINCT FROM S.REVIEW_COUNT " +
+                    " OR R.RATING_SUM IS DISTINCT FROM S.RATING_SUM ";
+
+    public static void main(String[] args) {
+        RatingSummaryChecker checker = new RatingSummaryChecker();
+        int exitCode = 0;
+        try {
+            if (args.length > 0 && "rebuild".equalsIgnoreCase(args[0])) {
+                checker.rebuild();
+                System.out.println("Rating summaries rebuilt");
+            }
+            long userMismatches = checker.countMismatches(COUNT_USER_MISMATCHES);
+            long productMismatches = checker.countMismatches(COUNT_PRODUCT_MISMATCHES);
+            System.out.println("USER_RATING_SUMMARY mismatches: " + userMismatches
+                    + ", PRODUCT_RATING_SUMMARY mismatches: " + productMismatches);
+            if (userMismatches + productMismatches > 0) {
+                exitCode = 1;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking rating summaries " + e.getSQLState() + e.getMessage());
+            exitCode = 2;
+        } finally {
+            DBBase.closePool();
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Recomputes both summaries from REVIEWS in a single transaction
+     *
+     * @throws SQLException If an SQL Error occurs
+     */
+    public void rebuild() throws SQLException {
+        try (Connection con = DBBase.getConnection()) {
+            con.setAutoCommit(false);
+            Statement stmt = null;
+            try {
+                stmt = con.createStatement();
+                stmt.execute(TRUNCATE_SUMMARIES);
+                stmt.execute(REBUILD_USER_RATING_SUMMARY);
+                stmt.execute(REBUILD_PRODUCT_RATING_SUMMARY);
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that both summaries match REVIEWS
+     *
+     * @return true if there are no mismatches
+     * @throws SQLException If an SQL Error occurs
+     */
+    public boolean verify() throws SQLException {
+        return countMismatches(COUNT_USER_MISMATCHES) == 0 && countMismatches(COUNT_PRODUCT_MISMATCHES) == 0;
+    }
+
+    /**
+     * Counts keys whose summary row is missing, extra or different from the aggregate of REVIEWS.
+     * Runs in a REPEATABLE READ snapshot so that concurrent reviews do not show up as mismatches
+     *
+     * @param sql Mismatch query
+     * @return number of mismatching keys
+     * @throws SQLException If an SQL Error occurs
+     */
+    long countMismatches(String sql) throws SQLException {
+        try (Connection con = DBBase.getConnection()) {
+            con.setAutoCommit(false);
+            con.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            con.setReadOnly(true);
+            Statement stmt = null;
+            ResultSet rs = null;
+            try {
+                stmt = con.createStatement();
+                rs = stmt.executeQuery(sql);
+                long mismatches = 0;
+                if (rs.next()) {
+                    mismatches = rs.getLong("MISMATCHES");
+                }
+                con.commit();
+                return mismatches;
+            } finally {
+                if (!Objects.isNull(rs)) {
+                    rs.close();
+                }
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
+            }
+        }
+    }
+}
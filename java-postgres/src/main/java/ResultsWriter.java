@@ -0,0 +1,215 @@
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes interval records of a run to RESULTS_DIRECTORY/&lt;run id&gt;.csv or .jsonl (RESULTS_FORMAT).
+ * Records are queued and written by a background thread; if the queue is full the record
+ * is dropped and counted instead of blocking the caller.
+ * Every record is one operation in one interval: throughput, latency percentiles,
+ * attempts, failures by SQL state, dropped open loop arrivals, connection wait and allocation per operation.
+ *
+ * @author Abhishek Inamdar
+ */
+public class ResultsWriter implements AutoCloseable {
+    static final String CSV = "csv";
+    static final String JSONL = "jsonl";
+    static final int QUEUE_CAPACITY = 4096;
+
+    private static final Map<String, Object> END = new LinkedHashMap<>();
+
+    private final Path path;
+    private final String format;
+    private final BlockingQueue<Map<String, Object>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writerThread;
+    private final Writer out;
+    private boolean headerWritten = false;
+    private volatile IOException failure = null;
+
+    /**
+     * Opens the file and starts the writer thread
+     *
+     * @param path   Output file
+     * @param format "csv" or "jsonl"
+     * @throws IOException If file can not be created
+     */
+    public ResultsWriter(Path path, String format) throws IOException {
+        if (!CSV.equals(format) && !JSONL.equals(format)) {
+            throw new IllegalArgumentException("Unknown results format " + format);
+        }
+        this.path = path;
+        this.format = format;
+        if (!Objects.isNull(path.getParent())) {
+            Files.createDirectories(path.getParent());
+        }
+        out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        writerThread = new Thread(this::drain, "results-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Creates writer configured with RESULTS_FORMAT ("csv", "jsonl" or "none"), RESULTS_DIRECTORY
+     * and RESULTS_RUN_ID, which defaults to the start time
+     *
+     * @return ResultsWriter object, null if results are not written
+     * @throws IOException If file can not be created
+     */
+    public static ResultsWriter fromProperties() throws IOException {
+        String format = DBBase.getProperty("RESULTS_FORMAT", "none").toLowerCase();
+        if ("none".equals(format)) {
+            return null;
+        }
+        String runId = DBBase.getProperty("RESULTS_RUN_ID",
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        return new ResultsWriter(Paths.get(DBBase.getProperty("RESULTS_DIRECTORY", "results"),
+                runId + "." + format), format);
+    }
+
+    /**
+     * Builds the record of one operation in one interval
+     *
+     * @param profile         Workload profile name
+     * @param threadCount     Thread count of the run
+     * @param elapsedSeconds  Time from the start of the run to the end of the interval
+     * @param intervalSeconds Length of the interval
+     * @param operationIndex  Index of the operation in Utility.OPERATIONS
+     * @param latency         Latency histogram of the interval
+     * @param statistics      Counters of the interval
+     * @param runtime         Telemetry of the interval
+     * @return record with values in column order
+     */
+    public static Map<String, Object> intervalRecord(String profile, int threadCount, double elapsedSeconds,
+                                                     double intervalSeconds, int operationIndex, Histogram latency,
+                                                     RunStatistics.Snapshot statistics,
+                                                     RuntimeTelemetry.Snapshot runtime) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("timestamp", System.currentTimeMillis());
+        record.put("profile", profile);
+        record.put("threads", threadCount);
+        record.put("elapsedSeconds", round(elapsedSeconds));
+        record.put("intervalSeconds", round(intervalSeconds));
+        record.put("operation", Utility.OPERATIONS[operationIndex]);
+        record.put("ops", latency.getTotalCount());
+        record.put("opsPerSec", round(latency.getTotalCount() / Math.max(intervalSeconds, 1e-9)));
+        record.put("p50Ms", round(LatencyRecorder.toMillis(latency.getValueAtPercentile(50))));
+        record.put("p90Ms", round(LatencyRecorder.toMillis(latency.getValueAtPercentile(90))));
+        record.put("p99Ms", round(LatencyRecorder.toMillis(latency.getValueAtPercentile(99))));
+        record.put("p999Ms", round(LatencyRecorder.toMillis(latency.getValueAtPercentile(99.9))));
+        record.put("maxMs", round(LatencyRecorder.toMillis(latency.getMaxValue())));
+        record.put("attempts", statistics.getAttempts(operationIndex));
+        record.put("successes", statistics.getSuccesses(operationIndex));
+        for (String sqlState : RunStatistics.TRACKED_SQL_STATES) {
+            record.put("err_" + sqlState, statistics.getFailures(operationIndex, sqlState));
+        }
+        record.put("err_" + RunStatistics.OTHER_SQL_STATE,
+                statistics.getFailures(operationIndex, RunStatistics.OTHER_SQL_STATE));
+        record.put("dropped", statistics.getDropped(operationIndex));
+        record.put("connWaitMs", round(statistics.getAverageConnectionWaitMillis(operationIndex)));
+        record.put("allocBytesPerOp", runtime.getAllocatedBytesPerOperation(operationIndex));
+        return record;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    /**
+     * Queues record without blocking, the record is dropped if the writer is behind
+     *
+     * @param record Record built by intervalRecord
+     */
+    public void write(Map<String, Object> record) {
+        if (!queue.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Map<String, Object> record = queue.poll();
+                if (Objects.isNull(record)) {
+                    out.flush();
+                    record = queue.take();
+                }
+                if (record == END) {
+                    out.flush();
+                    return;
+                }
+                writeRecord(record);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeRecord(Map<String, Object> record) throws IOException {
+        if (JSONL.equals(format)) {
+            StringBuilder line = new StringBuilder("{");
+            for (Map.Entry<String, Object> entry : record.entrySet()) {
+                line.append(line.length() == 1 ? "" : ",").append('"').append(entry.getKey()).append("\":");
+                if (entry.getValue() instanceof String) {
+                    line.append('"').append(((String) entry.getValue()).replace("\\", "\\\\").replace("\"", "\\\""))
+                            .append('"');
+                } else {
+                    line.append(entry.getValue());
+                }
+            }
+            out.write(line.append("}\n").toString());
+            return;
+        }
+        if (!headerWritten) {
+            out.write(String.join(",", record.keySet()) + "\n");
+            headerWritten = true;
+        }
+        List<String> values = new ArrayList<>();
+        for (Object value : record.values()) {
+            values.add(String.valueOf(value));
+        }
+        out.write(String.join(",", values) + "\n");
+    }
+
+    /**
+     * Writes the queued records and closes the file
+     *
+     * @throws IOException If writing failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            queue.offer(END, 1, TimeUnit.MINUTES);
+            writerThread.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            out.close();
+        }
+        if (!Objects.isNull(failure)) {
+            throw failure;
+        }
+    }
+
+    public String getStats() {
+        return "ResultsWriter{path=" + path + ", dropped=" + dropped.sum() + '}';
+    }
+}
@@ -0,0 +1,94 @@
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed transaction is retried and how long to wait before retrying.
+ * Serialization failures (40001) and deadlocks (40P01) are retried with
+ * exponential backoff and full jitter.
+ *
+ * @author Abhishek Inamdar
+ */
+public class RetryPolicy {
+    /**
+     * query_canceled, reported when the backoff is interrupted so it is neither counted nor retried
+     * as a serialization failure
+     */
+    public static final String INTERRUPTED_SQL_STATE = "57014";
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * Creates retry policy
+     *
+     * @param maxAttempts     Maximum number of attempts including the first one
+     * @param baseDelayMillis Backoff before the first retry
+     * @param maxDelayMillis  Maximum backoff
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Creates retry policy configured with RETRY_MAX_ATTEMPTS, RETRY_BASE_DELAY_MS
+     * and RETRY_MAX_DELAY_MS properties
+     *
+     * @return RetryPolicy object
+     */
+    public static RetryPolicy fromProperties() {
+        return new RetryPolicy(DBBase.getIntProperty("RETRY_MAX_ATTEMPTS", 5),
+                DBBase.getLongProperty("RETRY_BASE_DELAY_MS", 5),
+                DBBase.getLongProperty("RETRY_MAX_DELAY_MS", 200));
+    }
+
+    /**
+     * Checks if the failure is a transient concurrency failure
+     *
+     * @param e SQLException
+     * @return true if transaction can be retried
+     */
+    public boolean isRetryable(SQLException e) {
+        return Utility.SERIALIZATION_FAILURE_SQL_STATE.equals(e.getSQLState())
+                || Utility.DEADLOCK_SQL_STATE.equals(e.getSQLState());
+    }
+
+    /**
+     * Checks if another attempt is allowed after the given failed attempt
+     *
+     * @param e       Failure of the attempt
+     * @param attempt Number of the failed attempt, starting at 1
+     * @return true if transaction should be retried
+     */
+    public boolean shouldRetry(SQLException e, int attempt) {
+        return attempt < maxAttempts && isRetryable(e);
+    }
+
+    /**
+     * Sleeps random time between 0 and min(maxDelay, baseDelay * 2^(attempt - 1))
+     *
+     * @param attempt Number of the failed attempt, starting at 1
+     * @throws SQLException If interrupted while sleeping
+     */
+    public void backoff(int attempt) throws SQLException {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while backing off", INTERRUPTED_SQL_STATE, e);
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
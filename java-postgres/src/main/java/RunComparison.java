@@ -0,0 +1,270 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares two runs written by ResultsWriter. For every profile, thread count and operation
+ * the interval throughputs and p99 latencies of the runs are compared with Welch's t-test,
+ * and changes with p-value below alpha are flagged as improvement or regression.
+ * Intervals are treated as independent samples, so short record intervals overstate
+ * the significance of slow drifts.
+ *
+ * @author Abhishek Inamdar
+ */
+public class RunComparison {
+    static final double DEFAULT_ALPHA = 0.05;
+
+    private static final Pattern JSON_FIELD = Pattern.compile("\"([^\"]+)\":(\"((?:[^\"\\\\]|\\\\.)*)\"|[^,}]*)");
+
+    /**
+     * Mean, variance and size of a sample
+     */
+    static class Sample {
+        private final List<Double> values = new ArrayList<>();
+
+        void add(double value) {
+            values.add(value);
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double value : values) {
+                sum += value;
+            }
+            return sum / values.size();
+        }
+
+        double variance() {
+            double mean = mean();
+            double sum = 0;
+            for (double value : values) {
+                sum += (value - mean) * (value - mean);
+            }
+            return sum / (values.size() - 1);
+        }
+    }
+
+    /**
+     * Samples of one profile, thread count and operation
+     */
+    static class Series {
+        private final Sample throughput = new Sample();
+        private final Sample p99 = new Sample();
+    }
+
+    /**
+     * Reads interval records of a run, CSV or JSONL depending on the file extension
+     *
+     * @param path Results file
+     * @return records as column name to value
+     * @throws IOException If file can not be read
+     */
+    static List<Map<String, String>> readRecords(Path path) throws IOException {
+        List<Map<String, String>> records = new ArrayList<>();
+        boolean json = path.toString().endsWith("." + ResultsWriter.JSONL);
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String[] header = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                Map<String, String> record = new HashMap<>();
+                if (json) {
+                    Matcher matcher = JSON_FIELD.matcher(line);
+                    while (matcher.find()) {
+                        record.put(matcher.group(1), Objects.isNull(matcher.group(3))
+                                ? matcher.group(2).trim() : matcher.group(3).replace("\\\"", "\"").replace("\\\\", "\\"));
+                    }
+                } else if (Objects.isNull(header)) {
+                    header = line.split(",");
+                    continue;
+                } else {
+                    String[] values = line.split(",");
+                    for (int i = 0; i < header.length && i < values.length; i++) {
+                        record.put(header[i], values[i]);
+                    }
+                }
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Groups interval samples by profile, thread count and operation.
+     * Intervals without operations have no latency and only count for throughput
+     *
+     * @param records Interval records
+     * @return series in key order
+     */
+    static Map<String, Series> group(List<Map<String, String>> records) {
+        Map<String, Series> series = new TreeMap<>();
+        for (Map<String, String> record : records) {
+            String key = String.format("%s/%04d/%s", record.get("profile"),
+                    Integer.parseInt(record.get("threads")), record.get("operation"));
+            Series values = series.computeIfAbsent(key, k -> new Series());
+            values.throughput.add(Double.parseDouble(record.get("opsPerSec")));
+            if (Long.parseLong(record.get("ops")) > 0) {
+                values.p99.add(Double.parseDouble(record.get("p99Ms")));
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Two sided p-value of Welch's t-test
+     *
+     * @param a First sample, at least 2 values
+     * @param b Second sample, at least 2 values
+     * @return probability of a difference in means at least as large if the means were equal
+     */
+    static double welchPValue(Sample a, Sample b) {
+        double va = a.variance() / a.size();
+        double vb = b.variance() / b.size();
+        double difference = a.mean() - b.mean();
+        if (va + vb == 0) {
+            return difference == 0 ? 1 : 0;
+        }
+        double t = difference / Math.sqrt(va + vb);
+        double df = (va + vb) * (va + vb) / (va * va / (a.size() - 1) + vb * vb / (b.size() - 1));
+        return regularizedIncompleteBeta(df / (df + t * t), df / 2, 0.5);
+    }
+
+    /**
+     * Regularized incomplete beta function I_x(a, b), by the continued fraction of Numerical Recipes
+     */
+    static double regularizedIncompleteBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaContinuedFraction(x, a, b) / a;
+        }
+        return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+    }
+
+    private static double betaContinuedFraction(double x, double a, double b) {
+        final double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double result = d;
+        for (int m = 1; m <= 300; m++) {
+            double numerator = m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m));
+            d = 1 / nonZero(1 + numerator * d, tiny);
+            c = nonZero(1 + numerator / c, tiny);
+            result *= d * c;
+            numerator = -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+            d = 1 / nonZero(1 + numerator * d, tiny);
+            c = nonZero(1 + numerator / c, tiny);
+            double delta = d * c;
+            result *= delta;
+            if (Math.abs(delta - 1) < 1e-12) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static double nonZero(double value, double tiny) {
+        return Math.abs(value) < tiny ? tiny : value;
+    }
+
+    /**
+     * Lanczos approximation of ln(Gamma(x)) for x &gt; 0
+     */
+    static double logGamma(double x) {
+        double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+
+    /**
+     * Formats comparison of one metric
+     *
+     * @param key              Profile/threads/operation
+     * @param metric           Metric name
+     * @param baseline         Baseline sample
+     * @param candidate        Candidate sample
+     * @param alpha            Significance level
+     * @param higherIsBetter   true for throughput, false for latency
+     * @return formatted line
+     */
+    static String compare(String key, String metric, Sample baseline, Sample candidate, double alpha,
+                          boolean higherIsBetter) {
+        if (baseline.size() < 2 || candidate.size() < 2) {
+            return String.format("%-45s %-10s not enough intervals (%d, %d)", key, metric,
+                    baseline.size(), candidate.size());
+        }
+        double pValue = welchPValue(baseline, candidate);
+        double change = baseline.mean() == 0 ? 0 : (candidate.mean() - baseline.mean()) / baseline.mean() * 100;
+        String flag = "";
+        if (pValue < alpha && candidate.mean() != baseline.mean()) {
+            flag = (candidate.mean() > baseline.mean()) == higherIsBetter ? "IMPROVEMENT" : "REGRESSION";
+        }
+        return String.format("%-45s %-10s baseline=%.3f, candidate=%.3f, change=%+.1f%%, p=%.4f %s",
+                key, metric, baseline.mean(), candidate.mean(), change, pValue, flag);
+    }
+
+    /**
+     * Compares two runs
+     *
+     * @param args baseline results file, candidate results file and optional alpha, default 0.05
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: RunComparison <baseline results> <candidate results> [alpha]");
+            return;
+        }
+        double alpha = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_ALPHA;
+        try {
+            Map<String, Series> baseline = group(readRecords(Paths.get(args[0])));
+            Map<String, Series> candidate = group(readRecords(Paths.get(args[1])));
+            System.out.println("Baseline: " + args[0] + ", candidate: " + args[1] + ", alpha: " + alpha);
+            for (Map.Entry<String, Series> entry : baseline.entrySet()) {
+                Series other = candidate.get(entry.getKey());
+                if (Objects.isNull(other)) {
+                    System.out.println(String.format("%-45s missing in candidate", entry.getKey()));
+                    continue;
+                }
+                System.out.println(compare(entry.getKey(), "ops/sec", entry.getValue().throughput,
+                        other.throughput, alpha, true));
+                System.out.println(compare(entry.getKey(), "p99 ms", entry.getValue().p99, other.p99, alpha, false));
+            }
+            for (String key : candidate.keySet()) {
+                if (!baseline.containsKey(key)) {
+                    System.out.println(String.format("%-45s missing in baseline", key));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Can not read results " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters of operation attempts, successes, failures by SQL state
+ * and open loop arrivals dropped before they were attempted.
+ * Counters are striped LongAdders so that workers never contend on a single
+ * memory location; snapshots can be taken at any time without stopping workers.
+ *
+ * @author Abhishek Inamdar
+ */
+public class RunStatistics {
+    /**
+     * SQL states counted separately, all the others are counted as OTHER
+     */
+    public static final String[] TRACKED_SQL_STATES = {Utility.DUPLICATE_SQL_STATE, Utility.CONSTRAINT_SQL_STATE,
+            Utility.FK_CONSTRAINT_SQL_STATE, Utility.TRANSACTION_BLOCKED_STATE,
+            Utility.SERIALIZATION_FAILURE_SQL_STATE, Utility.DEADLOCK_SQL_STATE};
+    public static final String OTHER_SQL_STATE = "other";
+
+    private final LongAdder[] attempts = newAdders(Utility.OPERATIONS.length);
+    private final LongAdder[] successes = newAdders(Utility.OPERATIONS.length);
+    private final LongAdder[][] failures = new LongAdder[Utility.OPERATIONS.length][];
+    private final LongAdder[] connectionWaitNanos = newAdders(Utility.OPERATIONS.length);
+    private final LongAdder[] connectionWaits = newAdders(Utility.OPERATIONS.length);
+    private final LongAdder[] dropped = newAdders(Utility.OPERATIONS.length);
+
+    /**
+     * Point in time copy of the counters
+     */
+    public static class Snapshot {
+        private final long[] attempts;
+        private final long[] successes;
+        private final long[][] failures;
+        private final long[] connectionWaitNanos;
+        private final long[] connectionWaits;
+        private final long[] dropped;
+
+        private Snapshot(long[] attempts, long[] successes, long[][] failures, long[] connectionWaitNanos,
+                         long[] connectionWaits, long[] dropped) {
+            this.attempts = attempts;
+            this.successes = successes;
+            this.failures = failures;
+            this.connectionWaitNanos = connectionWaitNanos;
+            this.connectionWaits = connectionWaits;
+            this.dropped = dropped;
+        }
+
+        public long getAttempts(int operationIndex) {
+            return attempts[operationIndex];
+        }
+
+        public long getSuccesses(int operationIndex) {
+            return successes[operationIndex];
+        }
+
+        /**
+         * @param operationIndex Index of the operation in Utility.OPERATIONS
+         * @return open loop arrivals of the operation dropped without being attempted
+         */
+        public long getDropped(int operationIndex) {
+            return dropped[operationIndex];
+        }
+
+        /**
+         * Returns failures of the operation with the given SQL state
+         *
+         * @param operationIndex Index of the operation in Utility.OPERATIONS
+         * @param sqlState       One of TRACKED_SQL_STATES or OTHER_SQL_STATE
+         * @return number of failures
+         */
+        public long getFailures(int operationIndex, String sqlState) {
+            return failures[operationIndex][sqlStateIndex(sqlState)];
+        }
+
+        /**
+         * @param operationIndex Index of the operation in Utility.OPERATIONS
+         * @return average time the operation waited for its connection, 0 if it never got one
+         */
+        public double getAverageConnectionWaitMillis(int operationIndex) {
+            long count = connectionWaits[operationIndex];
+            return count == 0 ? 0 : connectionWaitNanos[operationIndex] / 1e6 / count;
+        }
+
+        public long getTotalAttempts() {
+            long total = 0;
+            for (long value : attempts) {
+                total += value;
+            }
+            return total;
+        }
+
+        /**
+         * Returns counters accumulated since the given earlier snapshot
+         *
+         * @param previous Earlier snapshot
+         * @return difference of the snapshots
+         */
+        public Snapshot minus(Snapshot previous) {
+            long[] attemptsDelta = new long[attempts.length];
+            long[] successesDelta = new long[successes.length];
+            long[][] failuresDelta = new long[failures.length][];
+            long[] connectionWaitNanosDelta = new long[connectionWaitNanos.length];
+            long[] connectionWaitsDelta = new long[connectionWaits.length];
+            long[] droppedDelta = new long[dropped.length];
+            for (int i = 0; i < attempts.length; i++) {
+                attemptsDelta[i] = attempts[i] - previous.attempts[i];
+                successesDelta[i] = successes[i] - previous.successes[i];
+                connectionWaitNanosDelta[i] = connectionWaitNanos[i] - previous.connectionWaitNanos[i];
+                connectionWaitsDelta[i] = connectionWaits[i] - previous.connectionWaits[i];
+                droppedDelta[i] = dropped[i] - previous.dropped[i];
+                failuresDelta[i] = new long[failures[i].length];
+                for (int j = 0; j < failures[i].length; j++) {
+                    failuresDelta[i][j] = failures[i][j] - previous.failures[i][j];
+                }
+            }
+            return new Snapshot(attemptsDelta, successesDelta, failuresDelta, connectionWaitNanosDelta,
+                    connectionWaitsDelta, droppedDelta);
+        }
+
+        /**
+         * Formats counters of an operation
+         *
+         * @param operationIndex Index of the operation in Utility.OPERATIONS
+         * @return formatted line
+         */
+        public String format(int operationIndex) {
+            StringBuilder line = new StringBuilder(String.format("%-22s attempts=%d, successes=%d, failures{",
+                    Utility.OPERATIONS[operationIndex], attempts[operationIndex], successes[operationIndex]));
+            for (int j = 0; j <= TRACKED_SQL_STATES.length; j++) {
+                line.append(j == 0 ? "" : ", ")
+                        .append(j < TRACKED_SQL_STATES.length ? TRACKED_SQL_STATES[j] : OTHER_SQL_STATE)
+                        .append('=').append(failures[operationIndex][j]);
+            }
+            return line.append(String.format("}, dropped=%d, connWait=%.3fms", dropped[operationIndex],
+                    getAverageConnectionWaitMillis(operationIndex))).toString();
+        }
+    }
+
+    public RunStatistics() {
+        for (int i = 0; i < failures.length; i++) {
+            failures[i] = newAdders(TRACKED_SQL_STATES.length + 1);
+        }
+    }
+
+    public void recordAttempt(int operationIndex) {
+        attempts[operationIndex].increment();
+    }
+
+    public void recordSuccess(int operationIndex) {
+        successes[operationIndex].increment();
+    }
+
+    /**
+     * Records failure of an operation
+     *
+     * @param operationIndex Index of the operation in Utility.OPERATIONS
+     * @param sqlState       SQL state of the failure
+     */
+    public void recordFailure(int operationIndex, String sqlState) {
+        failures[operationIndex][sqlStateIndex(sqlState)].increment();
+    }
+
+    /**
+     * Records open loop arrival of the operation dropped because the queue was full
+     *
+     * @param operationIndex Index of the operation in Utility.OPERATIONS
+     */
+    public void recordDropped(int operationIndex) {
+        dropped[operationIndex].increment();
+    }
+
+    /**
+     * Records time spent waiting for a connection, including the connection limiter
+     *
+     * @param operationIndex Index of the operation in Utility.OPERATIONS
+     * @param waitNanos      Wait time in nanoseconds
+     */
+    public void recordConnectionWait(int operationIndex, long waitNanos) {
+        connectionWaitNanos[operationIndex].add(waitNanos);
+        connectionWaits[operationIndex].increment();
+    }
+
+    /**
+     * Takes snapshot of the counters without blocking the workers.
+     * Counters are read one by one, so concurrent updates may be split between
+     * two consecutive snapshots but are never lost.
+     *
+     * @return Snapshot object
+     */
+    public Snapshot snapshot() {
+        long[] attemptsCopy = new long[attempts.length];
+        long[] successesCopy = new long[successes.length];
+        long[][] failuresCopy = new long[failures.length][];
+        long[] connectionWaitNanosCopy = new long[connectionWaitNanos.length];
+        long[] connectionWaitsCopy = new long[connectionWaits.length];
+        long[] droppedCopy = new long[dropped.length];
+        for (int i = 0; i < attempts.length; i++) {
+            attemptsCopy[i] = attempts[i].sum();
+            successesCopy[i] = successes[i].sum();
+            connectionWaitNanosCopy[i] = connectionWaitNanos[i].sum();
+            connectionWaitsCopy[i] = connectionWaits[i].sum();
+            droppedCopy[i] = dropped[i].sum();
+            failuresCopy[i] = new long[failures[i].length];
+            for (int j = 0; j < failures[i].length; j++) {
+                failuresCopy[i][j] = failures[i][j].sum();
+            }
+        }
+        return new Snapshot(attemptsCopy, successesCopy, failuresCopy, connectionWaitNanosCopy, connectionWaitsCopy,
+                droppedCopy);
+    }
+
+    private static int sqlStateIndex(String sqlState) {
+        for (int j = 0; j < TRACKED_SQL_STATES.length; j++) {
+            if (TRACKED_SQL_STATES[j].equals(sqlState)) {
+                return j;
+            }
+        }
+        return TRACKED_SQL_STATES.length;
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
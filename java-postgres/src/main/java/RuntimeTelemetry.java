@@ -0,0 +1,329 @@
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JVM side telemetry of a run: bytes allocated by every operation, measured on the worker
+ * thread with ThreadMXBean, stop-the-world pauses and concurrent cycles with their durations per
+ * collector from GC notifications, and heap occupancy. Concurrent cycles ("ZGC Cycles",
+ * "Shenandoah Cycles", action "end of GC cycle") mostly run beside the application, so only
+ * pauses count towards gcPauseTime. Like RunStatistics, counters are cumulative and reported
+ * as snapshot deltas.
+ * Allocation is not measured on JVMs or threads (virtual threads) without allocation counters.
+ *
+ * @author Abhishek Inamdar
+ */
+public class RuntimeTelemetry {
+    static final String CONCURRENT_CYCLE_ACTION = "end of GC cycle";
+    static final String CONCURRENT_CYCLE_SUFFIX = "Cycles";
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = allocationBean();
+
+    private final LongAdder[] allocatedBytes = newAdders(Utility.OPERATIONS.length);
+    private final LongAdder[] measuredOperations = newAdders(Utility.OPERATIONS.length);
+
+    private final String[] collectorNames;
+    private final AtomicLong[] pauses;
+    private final AtomicLong[] pauseMillis;
+    private final AtomicLong[] cycles;
+    private final AtomicLong[] cycleMillis;
+    private final Set<String> heapPoolNames = new HashSet<>();
+    private final AtomicLong heapUsedAfterGc = new AtomicLong(-1);
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = this::onNotification;
+
+    /**
+     * Point in time copy of the counters
+     */
+    public static class Snapshot {
+        private final long[] allocatedBytes;
+        private final long[] measuredOperations;
+        private final String[] collectorNames;
+        private final long[] pauses;
+        private final long[] pauseMillis;
+        private final long[] cycles;
+        private final long[] cycleMillis;
+        private final long heapUsed;
+        private final long heapCommitted;
+        private final long heapUsedAfterGc;
+
+        private Snapshot(long[] allocatedBytes, long[] measuredOperations, String[] collectorNames,
+                         long[] pauses, long[] pauseMillis, long[] cycles, long[] cycleMillis, long heapUsed,
+                         long heapCommitted, long heapUsedAfterGc) {
+            this.allocatedBytes = allocatedBytes;
+            this.measuredOperations = measuredOperations;
+            this.collectorNames = collectorNames;
+            this.pauses = pauses;
+            this.pauseMillis = pauseMillis;
+            this.cycles = cycles;
+            this.cycleMillis = cycleMillis;
+            this.heapUsed = heapUsed;
+            this.heapCommitted = heapCommitted;
+            this.heapUsedAfterGc = heapUsedAfterGc;
+        }
+
+        /**
+         * @param operationIndex Index of the operation in Utility.OPERATIONS
+         * @return average bytes allocated by one operation, -1 if not measured
+         */
+        public long getAllocatedBytesPerOperation(int operationIndex) {
+            long count = measuredOperations[operationIndex];
+            return count == 0 ? -1 : allocatedBytes[operationIndex] / count;
+        }
+
+        public long getTotalPauses() {
+            return sum(pauses);
+        }
+
+        public long getTotalPauseMillis() {
+            return sum(pauseMillis);
+        }
+
+        public long getTotalCycleMillis() {
+            return sum(cycleMillis);
+        }
+
+        private static long sum(long[] values) {
+            long total = 0;
+            for (long value : values) {
+                total += value;
+            }
+            return total;
+        }
+
+        public long getHeapUsed() {
+            return heapUsed;
+        }
+
+        /**
+         * Returns counters accumulated since the given earlier snapshot, heap values are the current ones
+         *
+         * @param previous Earlier snapshot
+         * @return difference of the snapshots
+         */
+        public Snapshot minus(Snapshot previous) {
+            return new Snapshot(minus(allocatedBytes, previous.allocatedBytes),
+                    minus(measuredOperations, previous.measuredOperations), collectorNames,
+                    minus(pauses, previous.pauses), minus(pauseMillis, previous.pauseMillis),
+                    minus(cycles, previous.cycles), minus(cycleMillis, previous.cycleMillis),
+                    heapUsed, heapCommitted, heapUsedAfterGc);
+        }
+
+        private static long[] minus(long[] values, long[] previous) {
+            long[] delta = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                delta[i] = values[i] - previous[i];
+            }
+            return delta;
+        }
+
+        /**
+         * @param operationIndex Index of the operation in Utility.OPERATIONS
+         * @return allocation of the operation in one line
+         */
+        public String format(int operationIndex) {
+            long perOperation = getAllocatedBytesPerOperation(operationIndex);
+            return String.format("%-22s alloc/op=%s", Utility.OPERATIONS[operationIndex],
+                    perOperation < 0 ? "n/a" : String.format("%.1fKB", perOperation / 1024.0));
+        }
+
+        /**
+         * @param elapsedSeconds Length of the period
+         * @return pauses and concurrent cycles per collector and heap occupancy in one line
+         */
+        public String formatRuntime(double elapsedSeconds) {
+            StringBuilder builder = new StringBuilder("gc pauses:");
+            StringBuilder concurrent = new StringBuilder();
+            for (int i = 0; i < collectorNames.length; i++) {
+                boolean cycleCollector = collectorNames[i].endsWith(CONCURRENT_CYCLE_SUFFIX);
+                if (!cycleCollector || pauses[i] > 0) {
+                    builder.append(' ').append(collectorNames[i]).append('=').append(pauses[i])
+                            .append(" (").append(pauseMillis[i]).append("ms)");
+                }
+                if (cycleCollector || cycles[i] > 0) {
+                    concurrent.append(' ').append(collectorNames[i]).append('=').append(cycles[i])
+                            .append(" (").append(cycleMillis[i]).append("ms)");
+                }
+            }
+            if (concurrent.length() > 0) {
+                builder.append(", concurrent cycles:").append(concurrent);
+            }
+            builder.append(String.format(", gcPauseTime=%.2f%%, heapUsed=%.1fMB/%.1fMB",
+                    getTotalPauseMillis() / 10.0 / Math.max(elapsedSeconds, 1e-9),
+                    heapUsed / 1048576.0, heapCommitted / 1048576.0));
+            if (heapUsedAfterGc >= 0) {
+                builder.append(String.format(", afterGc=%.1fMB", heapUsedAfterGc / 1048576.0));
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Creates telemetry and starts listening for GC notifications, must be closed
+     */
+    public RuntimeTelemetry() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPoolNames.add(pool.getName());
+            }
+        }
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        collectorNames = new String[collectors.size()];
+        pauses = newCounters(collectors.size());
+        pauseMillis = newCounters(collectors.size());
+        cycles = newCounters(collectors.size());
+        cycleMillis = newCounters(collectors.size());
+        for (int i = 0; i < collectors.size(); i++) {
+            collectorNames[i] = collectors.get(i).getName();
+            if (collectors.get(i) instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) collectors.get(i);
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+            if (allocationBean.isThreadAllocatedMemorySupported()) {
+                allocationBean.setThreadAllocatedMemoryEnabled(true);
+                return allocationBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return bytes allocated so far by the calling thread, -1 if not supported
+     */
+    public static long currentThreadAllocatedBytes() {
+        return THREAD_BEAN == null ? -1 : THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Records allocation of an operation performed by the calling thread
+     *
+     * @param operationIndex        Index of the operation in Utility.OPERATIONS
+     * @param allocatedBytesAtStart currentThreadAllocatedBytes at the start of the operation
+     */
+    public void recordAllocation(int operationIndex, long allocatedBytesAtStart) {
+        if (allocatedBytesAtStart < 0) {
+            return;
+        }
+        long allocatedBytesAtEnd = currentThreadAllocatedBytes();
+        if (allocatedBytesAtEnd >= allocatedBytesAtStart) {
+            allocatedBytes[operationIndex].add(allocatedBytesAtEnd - allocatedBytesAtStart);
+            measuredOperations[operationIndex].increment();
+        }
+    }
+
+    private void onNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        boolean cycle = isConcurrentCycle(info.getGcName(), info.getGcAction());
+        for (int i = 0; i < collectorNames.length; i++) {
+            if (collectorNames[i].equals(info.getGcName())) {
+                (cycle ? cycles : pauses)[i].incrementAndGet();
+                (cycle ? cycleMillis : pauseMillis)[i].addAndGet(info.getGcInfo().getDuration());
+            }
+        }
+        GcInfo gcInfo = info.getGcInfo();
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> usage : gcInfo.getMemoryUsageAfterGc().entrySet()) {
+            if (heapPoolNames.contains(usage.getKey())) {
+                used += usage.getValue().getUsed();
+            }
+        }
+        heapUsedAfterGc.set(used);
+    }
+
+    /**
+     * Tells concurrent cycles from stop-the-world pauses. The duration of a cycle is its wall time,
+     * most of it concurrent with the application; "G1 Concurrent GC" reports the Remark and
+     * Cleanup pauses of the concurrent cycle, which are pauses
+     *
+     * @param gcName   Collector name of the notification
+     * @param gcAction Action of the notification
+     * @return true for a concurrent cycle
+     */
+    static boolean isConcurrentCycle(String gcName, String gcAction) {
+        return CONCURRENT_CYCLE_ACTION.equals(gcAction) || gcName.endsWith(CONCURRENT_CYCLE_SUFFIX);
+    }
+
+    /**
+     * @return current values of the counters
+     */
+    public Snapshot snapshot() {
+        long[] allocatedBytesCopy = new long[allocatedBytes.length];
+        long[] measuredOperationsCopy = new long[measuredOperations.length];
+        for (int i = 0; i < allocatedBytes.length; i++) {
+            allocatedBytesCopy[i] = allocatedBytes[i].sum();
+            measuredOperationsCopy[i] = measuredOperations[i].sum();
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return new Snapshot(allocatedBytesCopy, measuredOperationsCopy, collectorNames, copy(pauses),
+                copy(pauseMillis), copy(cycles), copy(cycleMillis), heap.getUsed(), heap.getCommitted(),
+                heapUsedAfterGc.get());
+    }
+
+    /**
+     * Stops listening for GC notifications
+     */
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                // already removed
+            }
+        }
+        emitters.clear();
+    }
+
+    private static AtomicLong[] newCounters(int count) {
+        AtomicLong[] counters = new AtomicLong[count];
+        for (int i = 0; i < count; i++) {
+            counters[i] = new AtomicLong();
+        }
+        return counters;
+    }
+
+    private static long[] copy(AtomicLong[] counters) {
+        long[] values = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            values[i] = counters[i].get();
+        }
+        return values;
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
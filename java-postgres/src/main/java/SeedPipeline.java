@@ -0,0 +1,257 @@
+import io.codearte.jfairy.Fairy;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Producer/consumer pipeline loading one table with several generator threads
+ * and several COPY loader connections.
+ * Every generator owns a disjoint key range, generated chunks are passed to the
+ * loaders through a bounded queue so generators block when loaders fall behind.
+ *
+ * @author Abhishek Inamdar
+ */
+public class SeedPipeline {
+    /**
+     * Marks end of the chunks for a loader
+     */
+    private static final byte[] END_OF_DATA = new byte[0];
+
+    /**
+     * Loads the chunks of one loader thread
+     */
+    interface ChunkLoader {
+        /**
+         * Copies chunks until next() returns null
+         *
+         * @param copySql COPY FROM STDIN statement
+         * @param chunks  Chunks to load
+         * @return number of rows loaded
+         * @throws SQLException         If an SQL Error occurs
+         * @throws InterruptedException If interrupted while waiting for a chunk
+         */
+        long copy(String copySql, Chunks chunks) throws SQLException, InterruptedException;
+    }
+
+    /**
+     * Chunks queued for the loaders, shared by all the threads of one load
+     */
+    static final class Chunks {
+        private final BlockingQueue<byte[]> queue;
+        private final AtomicReference<Exception> failure;
+
+        private Chunks(BlockingQueue<byte[]> queue, AtomicReference<Exception> failure) {
+            this.queue = queue;
+            this.failure = failure;
+        }
+
+        /**
+         * Blocks until a chunk is available
+         *
+         * @return next chunk, null after the last chunk of this loader or once any thread failed
+         */
+        byte[] next() throws InterruptedException {
+            byte[] chunk = take(queue, failure);
+            return chunk == END_OF_DATA ? null : chunk;
+        }
+
+        boolean failed() {
+            return failure.get() != null;
+        }
+    }
+
+    private final int generators;
+    private final int loaders;
+    private final int queueCapacity;
+    private final Supplier<Fairy> fairies;
+    private final ChunkLoader loader;
+
+    /**
+     * Creates pipeline
+     *
+     * @param generators    Number of generator threads
+     * @param loaders       Number of loader connections
+     * @param queueCapacity Maximum number of chunks waiting to be loaded
+     */
+    public SeedPipeline(int generators, int loaders, int queueCapacity) {
+        this(generators, loaders, queueCapacity, Fairy::create, SeedPipeline::copyChunks);
+    }
+
+    /**
+     * Creates pipeline with its own Fairy instances and loaders
+     *
+     * @param generators    Number of generator threads
+     * @param loaders       Number of loader threads
+     * @param queueCapacity Maximum number of chunks waiting to be loaded
+     * @param fairies       Creates Fairy of a generator thread
+     * @param loader        Loads chunks of a loader thread
+     */
+    SeedPipeline(int generators, int loaders, int queueCapacity, Supplier<Fairy> fairies, ChunkLoader loader) {
+        if (generators < 1 || loaders < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid pipeline configuration, generators: " + generators
+                    + ", loaders: " + loaders + ", queueCapacity: " + queueCapacity);
+        }
+        this.generators = generators;
+        this.loaders = loaders;
+        this.queueCapacity = queueCapacity;
+        this.fairies = fairies;
+        this.loader = loader;
+    }
+
+    /**
+     * Loads rows for keys from..to (both inclusive)
+     *
+     * @param copySql       COPY FROM STDIN statement
+     * @param from          First key
+     * @param to            Last key
+     * @param writerFactory Creates row generator for a generator thread
+     * @return number of rows loaded
+     * @throws SQLException If an SQL Error occurs in any of the loaders
+     */
+    public long load(String copySql, int from, int to,
+                     Function<Fairy, BulkLoader.RowWriter> writerFactory) throws SQLException {
+        final long startTime = System.nanoTime();
+        BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicLong rows = new AtomicLong();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Chunks source = new Chunks(chunks, failure);
+
+        List<Thread> loaderThreads = new ArrayList<>();
+        for (int i = 0; i < loaders; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    rows.addAndGet(loader.copy(copySql, source));
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "seed-loader-" + i);
+            loaderThreads.add(thread);
+            thread.start();
+        }
+
+        List<Thread> generatorThreads = new ArrayList<>();
+        int keys = to - from + 1;
+        int partitions = Math.max(1, Math.min(generators, keys));
+        for (int i = 0; i < partitions; i++) {
+            // Disjoint key range of this generator
+            int rangeFrom = from + (int) ((long) keys * i / partitions);
+            int rangeTo = from + (int) ((long) keys * (i + 1) / partitions) - 1;
+            Thread thread = new Thread(() -> {
+                try {
+                    generate(writerFactory.apply(fairies.get()), rangeFrom, rangeTo, chunks, failure);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "seed-generator-" + i);
+            generatorThreads.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : generatorThreads) {
+                thread.join();
+            }
+            for (int i = 0; i < loaders; i++) {
+                put(chunks, END_OF_DATA, failure);
+            }
+            for (Thread thread : loaderThreads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+
+        Exception e = failure.get();
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        } else if (e != null) {
+            throw new SQLException("Seeding failed for " + copySql, e);
+        }
+        BulkLoader.report(copySql, rows.get(), System.nanoTime() - startTime);
+        return rows.get();
+    }
+
+    private static void generate(BulkLoader.RowWriter writer, int from, int to, BlockingQueue<byte[]> chunks,
+                                 AtomicReference<Exception> failure) throws InterruptedException {
+        StringBuilder buffer = new StringBuilder(BulkLoader.CHUNK_SIZE + 1024);
+        for (int key = from; key <= to && failure.get() == null; key++) {
+            writer.write(key, buffer);
+            if (buffer.length() >= BulkLoader.CHUNK_SIZE) {
+                put(chunks, toBytes(buffer), failure);
+            }
+        }
+        if (buffer.length() > 0) {
+            put(chunks, toBytes(buffer), failure);
+        }
+    }
+
+    private static long copyChunks(String copySql, Chunks chunks) throws SQLException, InterruptedException {
+        try (Connection con = DBBase.getConnection()) {
+            con.setAutoCommit(false);
+            CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql);
+            long rows;
+            try {
+                byte[] chunk;
+                while ((chunk = chunks.next()) != null) {
+                    copyIn.writeToCopy(chunk, 0, chunk.length);
+                }
+                if (chunks.failed()) {
+                    // Partial data is cancelled and rolled back
+                    return 0;
+                }
+                rows = copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            con.commit();
+            return rows;
+        }
+    }
+
+    /**
+     * Blocks until the chunk is queued, giving up once any thread failed
+     */
+    private static void put(BlockingQueue<byte[]> chunks, byte[] chunk,
+                            AtomicReference<Exception> failure) throws InterruptedException {
+        while (failure.get() == null) {
+            if (chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Blocks until a chunk is available, returns END_OF_DATA once any thread failed
+     */
+    private static byte[] take(BlockingQueue<byte[]> chunks,
+                               AtomicReference<Exception> failure) throws InterruptedException {
+        while (failure.get() == null) {
+            byte[] chunk = chunks.poll(100, TimeUnit.MILLISECONDS);
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        return END_OF_DATA;
+    }
+
+    private static byte[] toBytes(StringBuilder buffer) {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.setLength(0);
+        return bytes;
+    }
+}
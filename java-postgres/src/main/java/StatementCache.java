@@ -0,0 +1,198 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements of a single physical connection, keyed by SQL text.
+ * Reusing the same PreparedStatement lets the driver switch to named server-side
+ * statements (after prepareThreshold executions) instead of parsing and planning
+ * on every call.
+ * Statements in use are never evicted; when all the statements over maxSize are in use,
+ * the least recently used ones are evicted as soon as they are checked in.
+ *
+ * @author Abhishek Inamdar
+ */
+public class StatementCache {
+    /**
+     * Metrics shared by all the caches
+     */
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+
+    private final Connection physical;
+    private final int maxSize;
+    private final Map<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Cached statement along with its checked out state
+     */
+    private static class CachedStatement {
+        private final String sql;
+        private final PreparedStatement statement;
+        private boolean inUse = false;
+
+        private CachedStatement(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * Creates cache for the given physical connection
+     *
+     * @param physical Physical connection
+     * @param maxSize  Maximum number of cached statements
+     */
+    public StatementCache(Connection physical, int maxSize) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns prepared statement for the given SQL.
+     * Calling close() on the returned statement gives it back to the cache.
+     * If the cached statement is already in use, an uncached statement is returned.
+     *
+     * @param sql SQL text
+     * @return PreparedStatement object
+     * @throws SQLException If an SQL Error occurs
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse) {
+            hits.increment();
+        } else {
+            misses.increment();
+            PreparedStatement statement = physical.prepareStatement(sql);
+            if (cached != null) {
+                return statement;
+            }
+            cached = new CachedStatement(sql, statement);
+            cached.inUse = true;
+            statements.put(sql, cached);
+            evictOverCapacity();
+        }
+        cached.inUse = true;
+        return wrap(cached);
+    }
+
+    /**
+     * Evicts least recently used statements which are not in use until the cache fits maxSize
+     */
+    private void evictOverCapacity() {
+        Iterator<CachedStatement> eldestFirst = statements.values().iterator();
+        while (statements.size() > maxSize && eldestFirst.hasNext()) {
+            CachedStatement cached = eldestFirst.next();
+            if (!cached.inUse) {
+                eldestFirst.remove();
+                evictions.increment();
+                closeQuietly(cached.statement);
+            }
+        }
+    }
+
+    /**
+     * @return number of cached statements, in use or not
+     */
+    synchronized int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes all the cached statements
+     */
+    public synchronized void close() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        statements.clear();
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns hit/miss metrics of all the caches
+     *
+     * @return metrics string
+     */
+    public static String getStats() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return "StatementCache{hits=" + hitCount +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                ", hitRate=" + (total == 0 ? 0.0 : (double) hitCount / total) +
+                '}';
+    }
+
+    private synchronized void checkIn(CachedStatement cached) throws SQLException {
+        cached.inUse = false;
+        if (statements.get(cached.sql) != cached) {
+            // Evicted or cache closed while in use
+            closeQuietly(cached.statement);
+            return;
+        }
+        cached.statement.clearParameters();
+        evictOverCapacity();
+    }
+
+    private PreparedStatement wrap(CachedStatement cached) {
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+                    private boolean closed = false;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        switch (method.getName()) {
+                            case "close":
+                                if (!closed) {
+                                    closed = true;
+                                    checkIn(cached);
+                                }
+                                return null;
+                            case "isClosed":
+                                return closed || cached.statement.isClosed();
+                            case "getConnection":
+                                throw new SQLException("getConnection() is not supported on cached statements");
+                            default:
+                                break;
+                        }
+                        if (closed) {
+                            throw new SQLException("Statement has already been closed");
+                        }
+                        try {
+                            return method.invoke(cached.statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached statement " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import io.codearte.jfairy.Fairy;
+import io.codearte.jfairy.producer.person.Person;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates workload data without building Fairy on every operation.
+ * Names and review texts are pre-generated into fixed size buffers which workers sample
+ * without locking; a background producer regenerates as many slots as were consumed,
+ * so the data keeps changing while the generation cost stays off the worker threads.
+ * Random strings are generated directly, and Fairy itself is cached per thread.
+ * Configured with SYNTHETIC_BUFFER_SIZE and SYNTHETIC_REFILL_MS properties.
+ *
+ * @author Abhishek Inamdar
+ */
+public class SyntheticData {
+    private static final byte[] ALPHABET =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes(StandardCharsets.ISO_8859_1);
+    private static final ThreadLocal<Fairy> FAIRY = ThreadLocal.withInitial(Fairy::create);
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[64]);
+
+    private static SyntheticData defaultData = null;
+
+    private final AtomicReferenceArray<String[]> names;
+    private final AtomicReferenceArray<String> reviewTexts;
+    private final LongAdder namesConsumed = new LongAdder();
+    private final LongAdder reviewTextsConsumed = new LongAdder();
+    private final long refillMillis;
+    private final Thread producer;
+    private volatile boolean closed = false;
+
+    /**
+     * Fills the buffers and starts the producer
+     *
+     * @param bufferSize   Number of names and of review texts kept
+     * @param refillMillis Pause between refills
+     */
+    public SyntheticData(int bufferSize, long refillMillis) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 1: " + bufferSize);
+        }
+        this.refillMillis = refillMillis;
+        names = new AtomicReferenceArray<>(bufferSize);
+        reviewTexts = new AtomicReferenceArray<>(bufferSize);
+        Fairy fairy = Fairy.create();
+        for (int i = 0; i < bufferSize; i++) {
+            names.set(i, newName(fairy));
+            reviewTexts.set(i, fairy.textProducer().text());
+        }
+        producer = new Thread(() -> produce(fairy), "synthetic-data-producer");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * Returns the shared instance, created on first use
+     *
+     * @return SyntheticData object
+     */
+    public static synchronized SyntheticData getDefault() {
+        if (Objects.isNull(defaultData)) {
+            defaultData = new SyntheticData(DBBase.getIntProperty("SYNTHETIC_BUFFER_SIZE", 1024),
+                    DBBase.getLongProperty("SYNTHETIC_REFILL_MS", 100));
+        }
+        return defaultData;
+    }
+
+    /**
+     * Stops the producer of the shared instance
+     */
+    public static synchronized void shutdownDefault() {
+        if (!Objects.isNull(defaultData)) {
+            defaultData.close();
+            defaultData = null;
+        }
+    }
+
+    /**
+     * @return Fairy of the calling thread, created once per thread
+     */
+    public static Fairy fairy() {
+        return FAIRY.get();
+    }
+
+    /**
+     * Random letters, same alphabet as Fairy's randomString.
+     * Every random long gives four characters
+     *
+     * @param length Number of characters
+     * @return random String
+     */
+    public static String randomString(int length) {
+        byte[] chars = length <= 64 ? SCRATCH.get() : new byte[length];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            if ((i & 3) == 0) {
+                bits = random.nextLong();
+            }
+            chars[i] = ALPHABET[(int) (((bits & 0xFFFF) * ALPHABET.length) >>> 16)];
+            bits >>>= 16;
+        }
+        return new String(chars, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return first name and last name
+     */
+    public String[] nextName() {
+        namesConsumed.increment();
+        return names.get(ThreadLocalRandom.current().nextInt(names.length()));
+    }
+
+    public String nextReviewText() {
+        reviewTextsConsumed.increment();
+        return reviewTexts.get(ThreadLocalRandom.current().nextInt(reviewTexts.length()));
+    }
+
+    private static String[] newName(Fairy fairy) {
+        Person person = fairy.person();
+        return new String[]{person.getFirstName(), person.getLastName()};
+    }
+
+    /**
+     * Regenerates consumed slots round robin, at most a whole buffer per refill
+     */
+    private void produce(Fairy fairy) {
+        int nameCursor = 0;
+        int reviewTextCursor = 0;
+        while (!closed) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(refillMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long nameCount = Math.min(namesConsumed.sumThenReset(), names.length());
+            for (long i = 0; i < nameCount && !closed; i++) {
+                names.set(nameCursor, newName(fairy));
+                nameCursor = (nameCursor + 1) % names.length();
+            }
+            long reviewTextCount = Math.min(reviewTextsConsumed.sumThenReset(), reviewTexts.length());
+            for (long i = 0; i < reviewTextCount && !closed; i++) {
+                reviewTexts.set(reviewTextCursor, fairy.textProducer().text());
+                reviewTextCursor = (reviewTextCursor + 1) % reviewTexts.length();
+            }
+        }
+    }
+
+    /**
+     * Stops the producer, buffers stay usable
+     */
+    public void close() {
+        closed = true;
+        producer.interrupt();
+    }
+}
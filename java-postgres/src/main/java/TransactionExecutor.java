@@ -0,0 +1,128 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs units of work in a transaction, retrying them according to the RetryPolicy.
+ * Counts retries and aborts (transactions given up after retryable failures) per operation.
+ *
+ * @author Abhishek Inamdar
+ */
+public class TransactionExecutor {
+    /**
+     * Work done within a transaction
+     *
+     * @param <T> Result type
+     */
+    public interface Work<T> {
+        T execute(Connection con) throws SQLException;
+    }
+
+    private static final LongAdder[] retries = newAdders();
+    private static final LongAdder[] aborts = newAdders();
+
+    private static TransactionExecutor defaultExecutor = null;
+
+    private final RetryPolicy retryPolicy;
+    private final TransactionSettings[] settings;
+
+    /**
+     * Creates executor
+     *
+     * @param retryPolicy Retry policy
+     * @param settings    Transaction settings indexed as Utility.OPERATIONS
+     */
+    public TransactionExecutor(RetryPolicy retryPolicy, TransactionSettings[] settings) {
+        if (settings.length != Utility.OPERATIONS.length) {
+            throw new IllegalArgumentException("Transaction settings are required for every operation");
+        }
+        this.retryPolicy = retryPolicy;
+        this.settings = settings.clone();
+    }
+
+    /**
+     * Returns executor using RetryPolicy and TransactionSettings configured from properties
+     *
+     * @return TransactionExecutor object
+     */
+    public static synchronized TransactionExecutor getDefault() {
+        if (defaultExecutor == null) {
+            TransactionSettings[] settings = new TransactionSettings[Utility.OPERATIONS.length];
+            for (int i = 0; i < settings.length; i++) {
+                settings[i] = TransactionSettings.fromProperties(Utility.OPERATIONS[i]);
+            }
+            defaultExecutor = new TransactionExecutor(RetryPolicy.fromProperties(), settings);
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Runs the work with the transaction settings of the operation and commits.
+     * On failure the transaction is rolled back and,
+     * if the failure is retryable, the work is run again after a backoff.
+     * Autocommit work is never retried, its statements may already be committed.
+     *
+     * @param operationIndex Index of the operation in Utility.OPERATIONS
+     * @param con            Connection
+     * @param work           Work to run
+     * @param <T>            Result type
+     * @return result of the work
+     * @throws SQLException If work fails with a non retryable error or attempts are exhausted
+     */
+    public <T> T execute(int operationIndex, Connection con, Work<T> work) throws SQLException {
+        TransactionSettings transactionSettings = settings[operationIndex];
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionSettings.apply(con);
+                T result = work.execute(con);
+                if (!transactionSettings.isAutoCommit()) {
+                    con.commit();
+                }
+                return result;
+            } catch (SQLException e) {
+                try {
+                    if (!con.getAutoCommit()) {
+                        con.rollback();
+                    }
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                    throw e;
+                }
+                if (transactionSettings.isAutoCommit() || !retryPolicy.shouldRetry(e, attempt)) {
+                    if (retryPolicy.isRetryable(e)) {
+                        aborts[operationIndex].increment();
+                    }
+                    throw e;
+                }
+                retries[operationIndex].increment();
+                retryPolicy.backoff(attempt);
+            }
+        }
+    }
+
+    public static long getRetries(int operationIndex) {
+        return retries[operationIndex].sum();
+    }
+
+    public static long getAborts(int operationIndex) {
+        return aborts[operationIndex].sum();
+    }
+
+    /**
+     * Resets retry and abort counters, called at the start of a run
+     */
+    public static void resetCounters() {
+        for (int i = 0; i < retries.length; i++) {
+            retries[i].reset();
+            aborts[i].reset();
+        }
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[Utility.OPERATIONS.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,124 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Transaction characteristics of an operation: isolation level, READ ONLY,
+ * DEFERRABLE or autocommit (every statement is its own transaction).
+ * Configured per operation with ISOLATION.&lt;operation&gt;, READ_ONLY.&lt;operation&gt;,
+ * DEFERRABLE.&lt;operation&gt; and AUTOCOMMIT.&lt;operation&gt; properties; ISOLATION, READ_ONLY,
+ * DEFERRABLE and AUTOCOMMIT set the defaults of all the operations.
+ * AUTOCOMMIT is only accepted for the read operations: a write committing statement by statement
+ * could leave an order without its details or stock decrements.
+ *
+ * @author Abhishek Inamdar
+ */
+public class TransactionSettings {
+    static final String SET_DEFERRABLE = "SET TRANSACTION ISOLATION LEVEL SERIALIZABLE, READ ONLY, DEFERRABLE";
+    static final List<String> AUTOCOMMIT_OPERATIONS =
+            Arrays.asList(Utility.GET_PRODUCT_REVIEWS, Utility.GET_AVERAGE_RATING,
+                    Utility.GET_AVERAGE_PRODUCT_RATING);
+
+    private final int isolation;
+    private final boolean readOnly;
+    private final boolean deferrable;
+    private final boolean autoCommit;
+
+    /**
+     * Creates transaction settings
+     *
+     * @param isolation  JDBC isolation level
+     * @param readOnly   true for READ ONLY transactions
+     * @param deferrable true for SERIALIZABLE READ ONLY DEFERRABLE transactions
+     * @param autoCommit true to run every statement in its own transaction
+     */
+    public TransactionSettings(int isolation, boolean readOnly, boolean deferrable, boolean autoCommit) {
+        if (deferrable && (!readOnly || isolation != Connection.TRANSACTION_SERIALIZABLE)) {
+            throw new IllegalArgumentException("DEFERRABLE requires SERIALIZABLE READ ONLY transactions");
+        }
+        this.isolation = isolation;
+        this.readOnly = readOnly;
+        this.deferrable = deferrable;
+        this.autoCommit = autoCommit;
+    }
+
+    /**
+     * Reads settings of the operation from properties
+     *
+     * @param operation Operation name
+     * @return TransactionSettings object
+     * @throws IllegalArgumentException If AUTOCOMMIT is set for a write operation
+     */
+    public static TransactionSettings fromProperties(String operation) {
+        boolean autoCommit = Boolean.parseBoolean(property("AUTOCOMMIT", operation, "false"));
+        if (autoCommit && !AUTOCOMMIT_OPERATIONS.contains(operation)) {
+            throw new IllegalArgumentException("AUTOCOMMIT is only supported for " + AUTOCOMMIT_OPERATIONS
+                    + ", not " + operation);
+        }
+        return new TransactionSettings(
+                parseIsolation(property("ISOLATION", operation, "SERIALIZABLE")),
+                Boolean.parseBoolean(property("READ_ONLY", operation, "false")),
+                Boolean.parseBoolean(property("DEFERRABLE", operation, "false")),
+                autoCommit);
+    }
+
+    /**
+     * Applies settings before the work of the transaction starts
+     *
+     * @param con Connection
+     * @throws SQLException If an SQL Error occurs
+     */
+    public void apply(Connection con) throws SQLException {
+        con.setAutoCommit(autoCommit);
+        // Pooled connections skip these when the value is unchanged
+        con.setTransactionIsolation(isolation);
+        con.setReadOnly(readOnly);
+        if (deferrable && !autoCommit) {
+            Statement stmt = null;
+            try {
+                stmt = con.createStatement();
+                stmt.execute(SET_DEFERRABLE);
+            } finally {
+                if (!Objects.isNull(stmt)) {
+                    stmt.close();
+                }
+            }
+        }
+    }
+
+    public boolean isAutoCommit() {
+        return autoCommit;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionSettings{" +
+                "isolation=" + isolation +
+                ", readOnly=" + readOnly +
+                ", deferrable=" + deferrable +
+                ", autoCommit=" + autoCommit +
+                '}';
+    }
+
+    private static String property(String name, String operation, String defaultValue) {
+        return DBBase.getProperty(name + "." + operation, DBBase.getProperty(name, defaultValue));
+    }
+
+    static int parseIsolation(String value) {
+        switch (value.trim().toUpperCase().replace(' ', '_')) {
+            case "READ_UNCOMMITTED":
+                return Connection.TRANSACTION_READ_UNCOMMITTED;
+            case "READ_COMMITTED":
+                return Connection.TRANSACTION_READ_COMMITTED;
+            case "REPEATABLE_READ":
+                return Connection.TRANSACTION_REPEATABLE_READ;
+            case "SERIALIZABLE":
+                return Connection.TRANSACTION_SERIALIZABLE;
+            default:
+                throw new IllegalArgumentException("Unknown isolation level " + value);
+        }
+    }
+}
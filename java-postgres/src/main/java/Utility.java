@@ -15,23 +15,36 @@ public class Utility {
     public static final String CONSTRAINT_SQL_STATE = "23514";
     public static final String FK_CONSTRAINT_SQL_STATE = "23503";
     public static final String TRANSACTION_BLOCKED_STATE = "25P02";
+    public static final String SERIALIZATION_FAILURE_SQL_STATE = "40001";
+    public static final String DEADLOCK_SQL_STATE = "40P01";
 
-    public static final int NUM_USERS = 1000;
+    /**
+     * Table cardinalities at scale factor 1
+     */
+    public static final int BASE_NUM_USERS = 1000;
+    public static final int BASE_NUM_PRODUCTS = 10_000;
+    public static final int BASE_NUM_REVIEWS = 20_000;
+    public static final int BASE_NUM_ORDERS = 10_000;
+
+    /**
+     * Table cardinalities scaled by the scale factor, see setScaleFactor
+     */
+    public static int NUM_USERS = BASE_NUM_USERS;
     public static final String USER_NAME_PREFIX = "user";
     public static final String PASSWORD_PREFIX = "password";
 
-    public static final int NUM_PRODUCTS = 10_000;
+    public static int NUM_PRODUCTS = BASE_NUM_PRODUCTS;
 
     public static final double MIN_PRODUCT_PRICE = 1.00;
     public static final double MAX_PRODUCT_PRICE = 100.00;
     public static final int MIN_PRODUCT_STOCK = 0;
     public static final int MAX_PRODUCT_STOCK = 100;
 
-    public static final int NUM_REVIEWS = 20_000;
+    public static int NUM_REVIEWS = BASE_NUM_REVIEWS;
     public static final double MIN_REVIEW_RATING = 0.00;
     public static final double MAX_REVIEW_RATING = 5.00;
 
-    public static final int NUM_ORDERS = 10_000;
+    public static int NUM_ORDERS = BASE_NUM_ORDERS;
     public static final long MIN_ORDER_DATE = Timestamp.valueOf("2020-01-01 00:00:00").getTime();
     public static final long MAX_ORDER_DATE = Timestamp.valueOf("2020-12-31 00:59:00").getTime();
     public static final int NUM_PRODUCTS_IN_ORDER = 10;
@@ -46,6 +59,56 @@ public class Utility {
     public static final String GET_AVERAGE_RATING = "getAverageUserRating";
     public static final String SUBMIT_ORDER = "submitOrder";
     public static final String POST_REVIEW = "postReview";
+    public static final String GET_AVERAGE_PRODUCT_RATING = "getAverageProductRating";
+    public static final String[] OPERATIONS = {CREATE_ACCOUNT, ADD_PRODUCT, UPDATE_STOCK_LEVEL,
+            GET_PRODUCT_REVIEWS, GET_AVERAGE_RATING, SUBMIT_ORDER, POST_REVIEW, GET_AVERAGE_PRODUCT_RATING};
+
+    private static double scaleFactor = 1;
+
+    static {
+        setScaleFactor(Double.parseDouble(DBBase.getProperty("SCALE_FACTOR", "1")));
+    }
+
+    /**
+     * Scales all the table cardinalities, and with them the key ranges of the workload.
+     * Must be called before the database is initialized and the workload starts
+     *
+     * @param factor Scale factor, 1 gives the base cardinalities
+     */
+    public static synchronized void setScaleFactor(double factor) {
+        if (!(factor > 0) || BASE_NUM_REVIEWS * factor > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid scale factor " + factor);
+        }
+        scaleFactor = factor;
+        NUM_USERS = scale(BASE_NUM_USERS, factor);
+        NUM_PRODUCTS = scale(BASE_NUM_PRODUCTS, factor);
+        NUM_REVIEWS = scale(BASE_NUM_REVIEWS, factor);
+        NUM_ORDERS = scale(BASE_NUM_ORDERS, factor);
+    }
+
+    public static double getScaleFactor() {
+        return scaleFactor;
+    }
+
+    private static int scale(int base, double factor) {
+        // At least 2 rows, intBetween(1, n) excludes n
+        return (int) Math.max(2, Math.round(base * factor));
+    }
+
+    /**
+     * Returns index of the operation in OPERATIONS
+     *
+     * @param operation Operation name
+     * @return index of the operation
+     */
+    public static int operationIndex(String operation) {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i].equals(operation)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + operation);
+    }
 
     public static int intBetween(int min, int max) {
         return ThreadLocalRandom.current().nextInt(min, max);
@@ -72,4 +135,20 @@ public class Utility {
             productQuantities.put(productId, quantity);
         }
     }
+
+    /**
+     * Fills the order with products chosen from the given distribution.
+     * Products chosen more than once keep the last quantity
+     *
+     * @param productQuantities Map to fill
+     * @param products          Product key distribution
+     */
+    public static void populateProductQuantityMap(Map<Integer, Integer> productQuantities,
+                                                  KeyDistribution products) {
+        for (int i = 1; i <= NUM_PRODUCTS_IN_ORDER; i++) {
+            int productId = products.next();
+            int quantity = intBetween(1, MAX_PRODUCT_QUANTITY_IN_ORDER);
+            productQuantities.put(productId, quantity);
+        }
+    }
 }
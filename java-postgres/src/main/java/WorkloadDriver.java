@@ -0,0 +1,249 @@
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the workload for a fixed duration.
+ * Closed loop: every worker runs an operation, waits for the think time and repeats.
+ * Open loop: operations arrive at a target rate with exponentially distributed
+ * inter-arrival times (Poisson arrivals) and are queued in a bounded queue.
+ * Operations receive their intended start time, so latency measured from it
+ * includes the time spent waiting behind slow operations (coordinated omission correction).
+ * In virtual thread mode every client (closed loop) or arrival (open loop) runs on its own
+ * virtual thread, so thousands of clients can block on JDBC without a platform thread each.
+ * Virtual threads are created through reflection and require Java 21 at run time.
+ *
+ * @author Abhishek Inamdar
+ */
+public class WorkloadDriver {
+    /**
+     * Workload operation
+     */
+    public interface Task {
+        /**
+         * Runs one operation
+         *
+         * @param intendedStartNanos System.nanoTime() at which the operation was supposed to start
+         */
+        void run(long intendedStartNanos);
+
+        /**
+         * Called instead of run for an open loop arrival dropped because the queue was full,
+         * so that it can be reported as failed rather than silently missing from the latencies
+         *
+         * @param intendedStartNanos System.nanoTime() at which the operation was supposed to start
+         */
+        default void dropped(long intendedStartNanos) {
+        }
+    }
+
+    public enum Mode {
+        CLOSED, OPEN
+    }
+
+    private final Mode mode;
+    private final int threadCount;
+    private final long durationNanos;
+    private final long thinkTimeNanos;
+    private final double targetOpsPerSecond;
+    private final int queueCapacity;
+    private final boolean virtualThreads;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates driver
+     *
+     * @param mode               Closed or open loop
+     * @param threadCount        Number of worker threads
+     * @param durationNanos      Run duration
+     * @param thinkTimeNanos     Think time between operations of a closed loop worker
+     * @param targetOpsPerSecond Offered load of the open loop
+     * @param queueCapacity      Maximum number of queued operations of the open loop
+     * @param virtualThreads     true to run clients on virtual threads
+     */
+    public WorkloadDriver(Mode mode, int threadCount, long durationNanos, long thinkTimeNanos,
+                          double targetOpsPerSecond, int queueCapacity, boolean virtualThreads) {
+        if (mode == Mode.OPEN && targetOpsPerSecond <= 0) {
+            throw new IllegalArgumentException("Open loop requires positive target ops/sec");
+        }
+        this.mode = mode;
+        this.threadCount = threadCount;
+        this.durationNanos = durationNanos;
+        this.thinkTimeNanos = thinkTimeNanos;
+        this.targetOpsPerSecond = targetOpsPerSecond;
+        this.queueCapacity = queueCapacity;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Creates driver configured with LOAD_MODE, THINK_TIME_MS, TARGET_OPS_PER_SEC,
+     * QUEUE_CAPACITY and VIRTUAL_THREADS properties of the profile
+     *
+     * @param profile         Workload profile
+     * @param threadCount     Number of worker threads
+     * @param durationSeconds Run duration
+     * @return WorkloadDriver object
+     */
+    public static WorkloadDriver fromProfile(WorkloadProfile profile, int threadCount, long durationSeconds) {
+        return new WorkloadDriver(
+                Mode.valueOf(profile.getProperty("LOAD_MODE", "closed").toUpperCase()),
+                threadCount,
+                TimeUnit.SECONDS.toNanos(durationSeconds),
+                TimeUnit.MILLISECONDS.toNanos(profile.getLongProperty("THINK_TIME_MS", 0)),
+                Double.parseDouble(profile.getProperty("TARGET_OPS_PER_SEC", "0")),
+                Integer.parseInt(profile.getProperty("QUEUE_CAPACITY", "1000")),
+                Boolean.parseBoolean(profile.getProperty("VIRTUAL_THREADS", "false")));
+    }
+
+    /**
+     * Runs the task until the duration elapses and waits for running operations
+     *
+     * @param task Operation to run
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void run(Task task) throws InterruptedException {
+        completed.reset();
+        dropped.reset();
+        if (mode == Mode.CLOSED) {
+            runClosedLoop(task);
+        } else {
+            runOpenLoop(task);
+        }
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * Returns number of open loop arrivals dropped because the queue was full
+     *
+     * @return dropped operations
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Calls Executors.newVirtualThreadPerTaskExecutor(), which exists from Java 21 on
+     *
+     * @return executor starting a virtual thread per task
+     * @throws UnsupportedOperationException If the running JVM has no virtual threads
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later, running "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+
+    private void runClosedLoop(Task task) throws InterruptedException {
+        final long deadline = System.nanoTime() + durationNanos;
+        Runnable client = () -> {
+            while (System.nanoTime() < deadline) {
+                task.run(System.nanoTime());
+                completed.increment();
+                if (thinkTimeNanos > 0) {
+                    LockSupport.parkNanos(thinkTimeNanos);
+                }
+            }
+        };
+        if (virtualThreads) {
+            ExecutorService executor = newVirtualThreadPerTaskExecutor();
+            for (int i = 0; i < threadCount; i++) {
+                executor.execute(client);
+            }
+            executor.shutdown();
+            // Clients stop by themselves at the deadline
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.err.println("Waiting for virtual thread clients to finish");
+            }
+            return;
+        }
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread worker = new Thread(client, "workload-worker-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void runOpenLoop(Task task) throws InterruptedException {
+        ExecutorService executor = virtualThreads ? newVirtualThreadPerTaskExecutor()
+                : new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        // Virtual thread executor never rejects, arrivals beyond running and queued capacity are dropped here
+        final Semaphore inFlight = new Semaphore(threadCount + queueCapacity);
+        final long startTime = System.nanoTime();
+        final long deadline = startTime + durationNanos;
+        final double meanInterArrivalNanos = 1e9 / targetOpsPerSecond;
+        long nextArrival = startTime;
+        try {
+            while (nextArrival < deadline) {
+                long wait = nextArrival - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                final long intendedStart = nextArrival;
+                if (!virtualThreads || inFlight.tryAcquire()) {
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                task.run(intendedStart);
+                                completed.increment();
+                            } finally {
+                                if (virtualThreads) {
+                                    inFlight.release();
+                                }
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        drop(task, intendedStart);
+                    }
+                } else {
+                    drop(task, intendedStart);
+                }
+                // Exponential inter-arrival time gives Poisson arrivals
+                nextArrival += (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble())
+                        * meanInterArrivalNanos);
+            }
+        } finally {
+            executor.shutdown();
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void drop(Task task, long intendedStart) {
+        dropped.increment();
+        task.dropped(intendedStart);
+    }
+}
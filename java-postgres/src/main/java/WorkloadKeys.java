@@ -0,0 +1,74 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Product and user key distributions of every operation.
+ * Configured with PRODUCT_KEY_DISTRIBUTION.&lt;operation&gt; and USER_KEY_DISTRIBUTION.&lt;operation&gt;
+ * properties; PRODUCT_KEY_DISTRIBUTION and USER_KEY_DISTRIBUTION set the defaults of all the operations.
+ * Operations with the same specification share one distribution, so hot keys are the same across them,
+ * and all the product (user) distributions share one KeySpace advanced by inserted products (users).
+ *
+ * @author Abhishek Inamdar
+ */
+public class WorkloadKeys {
+    private final KeyDistribution[] products;
+    private final KeyDistribution[] users;
+
+    /**
+     * Creates key distributions
+     *
+     * @param products Product key distributions indexed as Utility.OPERATIONS
+     * @param users    User key distributions indexed as Utility.OPERATIONS
+     */
+    public WorkloadKeys(KeyDistribution[] products, KeyDistribution[] users) {
+        if (products.length != Utility.OPERATIONS.length || users.length != Utility.OPERATIONS.length) {
+            throw new IllegalArgumentException("Key distributions are required for every operation");
+        }
+        this.products = products.clone();
+        this.users = users.clone();
+    }
+
+    /**
+     * Reads distributions from the profile, over the current NUM_PRODUCTS and NUM_USERS
+     *
+     * @param profile Workload profile
+     * @return WorkloadKeys object
+     */
+    public static WorkloadKeys fromProfile(WorkloadProfile profile) {
+        KeyDistribution[] products = new KeyDistribution[Utility.OPERATIONS.length];
+        KeyDistribution[] users = new KeyDistribution[Utility.OPERATIONS.length];
+        Map<String, KeyDistribution> productDistributions = new HashMap<>();
+        Map<String, KeyDistribution> userDistributions = new HashMap<>();
+        KeyDistribution.KeySpace productKeys = new KeyDistribution.KeySpace(Utility.NUM_PRODUCTS);
+        KeyDistribution.KeySpace userKeys = new KeyDistribution.KeySpace(Utility.NUM_USERS);
+        for (int i = 0; i < Utility.OPERATIONS.length; i++) {
+            String operation = Utility.OPERATIONS[i];
+            products[i] = productDistributions.computeIfAbsent(
+                    profile.getOperationProperty("PRODUCT_KEY_DISTRIBUTION", operation, "uniform"),
+                    spec -> KeyDistribution.parse(spec, productKeys));
+            users[i] = userDistributions.computeIfAbsent(
+                    profile.getOperationProperty("USER_KEY_DISTRIBUTION", operation, "uniform"),
+                    spec -> KeyDistribution.parse(spec, userKeys));
+        }
+        return new WorkloadKeys(products, users);
+    }
+
+    public KeyDistribution products(int operationIndex) {
+        return products[operationIndex];
+    }
+
+    public KeyDistribution users(int operationIndex) {
+        return users[operationIndex];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("WorkloadKeys{");
+        for (int i = 0; i < Utility.OPERATIONS.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(Utility.OPERATIONS[i])
+                    .append("=(products: ").append(products[i])
+                    .append(", users: ").append(users[i]).append(')');
+        }
+        return builder.append('}').toString();
+    }
+}
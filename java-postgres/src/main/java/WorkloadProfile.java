@@ -0,0 +1,181 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Named workload definition read from a profile file in the same PROPERTY==value format as db.properties.
+ * A profile is looked up as a file path, then as &lt;name&gt;.properties in PROFILE_DIRECTORY,
+ * then as profiles/&lt;name&gt;.properties in the resources, so new mixes need no rebuild.
+ * Properties:
+ * WEIGHT.&lt;operation&gt; relative operation weights, PRODUCT_KEY_DISTRIBUTION[.&lt;operation&gt;] and
+ * USER_KEY_DISTRIBUTION[.&lt;operation&gt;] key distributions, THREADS thread schedule
+ * (e.g. 1-10 or 1,2,4,8), WARMUP_SECONDS and RUN_DURATION_SECONDS.
+ * Properties missing from the profile, including the driver settings, fall back to db.properties.
+ *
+ * @author Abhishek Inamdar
+ */
+public class WorkloadProfile {
+    static final String PROFILE_RESOURCE_DIRECTORY = "profiles/";
+    static final String PROFILE_EXTENSION = ".properties";
+
+    private final String name;
+    private final Map<String, String> properties;
+
+    /**
+     * Creates profile
+     *
+     * @param name       Profile name
+     * @param properties Profile properties
+     */
+    public WorkloadProfile(String name, Map<String, String> properties) {
+        this.name = name;
+        this.properties = new HashMap<>(properties);
+    }
+
+    /**
+     * Loads profile from a file path, PROFILE_DIRECTORY or the resources, in that order
+     *
+     * @param name Profile name, or path of a profile file whose name without extension is the profile name
+     * @return WorkloadProfile object
+     * @throws IOException If profile does not exist or can not be read
+     */
+    public static WorkloadProfile load(String name) throws IOException {
+        Path file = Paths.get(name);
+        if (Files.isRegularFile(file)) {
+            String fileName = file.getFileName().toString();
+            String profileName = fileName.endsWith(PROFILE_EXTENSION)
+                    ? fileName.substring(0, fileName.length() - PROFILE_EXTENSION.length()) : fileName;
+            return new WorkloadProfile(profileName, read(Files.newInputStream(file)));
+        }
+        String directory = DBBase.getProperty("PROFILE_DIRECTORY", "");
+        if (!directory.isEmpty()) {
+            file = Paths.get(directory, name + PROFILE_EXTENSION);
+            if (Files.isRegularFile(file)) {
+                return new WorkloadProfile(name, read(Files.newInputStream(file)));
+            }
+        }
+        String resource = PROFILE_RESOURCE_DIRECTORY + name + PROFILE_EXTENSION;
+        InputStream in = WorkloadProfile.class.getClassLoader().getResourceAsStream(resource);
+        if (Objects.isNull(in)) {
+            throw new IOException("Workload profile not found: " + name + " (file, "
+                    + (directory.isEmpty() ? "" : directory + ", ") + "resource " + resource + ")");
+        }
+        return new WorkloadProfile(name, read(in));
+    }
+
+    /**
+     * Reads PROPERTY==value lines and closes the stream
+     */
+    static Map<String, String> read(InputStream in) throws IOException {
+        Map<String, String> properties = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("==");
+                if (parts.length > 1) {
+                    properties.put(parts[0].trim(), parts[1].trim());
+                }
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Profile made of db.properties only
+     *
+     * @return WorkloadProfile object
+     */
+    public static WorkloadProfile fromProperties() {
+        return new WorkloadProfile("properties", new HashMap<>());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns profile property, or the db.properties value if the profile does not set it
+     *
+     * @param property     Property name
+     * @param defaultValue Value returned if property is not set
+     * @return Property value
+     */
+    public String getProperty(String property, String defaultValue) {
+        String value = properties.get(property);
+        return Objects.isNull(value) || value.isEmpty() ? DBBase.getProperty(property, defaultValue) : value;
+    }
+
+    /**
+     * Returns property of the operation. Both operation specific and general values
+     * of the profile take precedence over db.properties
+     *
+     * @param property     Property name, operation specific value is property.&lt;operation&gt;
+     * @param operation    Operation name
+     * @param defaultValue Value returned if property is not set
+     * @return Property value
+     */
+    public String getOperationProperty(String property, String operation, String defaultValue) {
+        String value = properties.get(property + "." + operation);
+        if (Objects.isNull(value) || value.isEmpty()) {
+            value = properties.get(property);
+        }
+        if (Objects.isNull(value) || value.isEmpty()) {
+            value = DBBase.getProperty(property + "." + operation, DBBase.getProperty(property, defaultValue));
+        }
+        return value;
+    }
+
+    public long getLongProperty(String property, long defaultValue) {
+        return Long.parseLong(getProperty(property, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * @return sampler of operation indexes following WEIGHT.&lt;operation&gt; properties
+     */
+    public AliasSampler operationSampler() {
+        double[] weights = new double[Utility.OPERATIONS.length];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Double.parseDouble(getProperty("WEIGHT." + Utility.OPERATIONS[i], "0"));
+        }
+        return new AliasSampler(weights);
+    }
+
+    /**
+     * @return thread counts to run, in order
+     */
+    public int[] getThreadCounts() {
+        List<Integer> counts = new ArrayList<>();
+        for (String part : getProperty("THREADS", "1-" + Utility.MAX_THREADS_TO_RUN).split(",")) {
+            String[] range = part.trim().split("-");
+            int from = Integer.parseInt(range[0].trim());
+            int to = range.length > 1 ? Integer.parseInt(range[1].trim()) : from;
+            for (int count = from; count <= to; count++) {
+                counts.add(count);
+            }
+        }
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public long getWarmupSeconds() {
+        return getLongProperty("WARMUP_SECONDS", 0);
+    }
+
+    public long getRunDurationSeconds() {
+        return getLongProperty("RUN_DURATION_SECONDS", Utility.MINUTES_TO_RUN * 60L);
+    }
+
+    @Override
+    public String toString() {
+        return "WorkloadProfile{" + name + ", " + properties + '}';
+    }
+}
@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that sampled frequencies follow the weights
+ *
+ * @author Abhishek Inamdar
+ */
+class AliasSamplerTest {
+    private static final int SAMPLES = 500_000;
+
+    private static void assertFrequencies(double[] weights) {
+        AliasSampler sampler = new AliasSampler(weights);
+        int[] counts = new int[weights.length];
+        for (int i = 0; i < SAMPLES; i++) {
+            counts[sampler.next()]++;
+        }
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] == 0) {
+                assertEquals(0, counts[i], "index " + i + " has zero weight");
+            } else {
+                assertEquals(weights[i] / total, (double) counts[i] / SAMPLES, 0.005, "index " + i);
+            }
+        }
+    }
+
+    @Test
+    void followsWeights() {
+        assertFrequencies(new double[]{1, 2, 3, 4});
+        assertFrequencies(new double[]{80, 14, 2, 1, 1, 1, 1});
+    }
+
+    @Test
+    void neverSamplesZeroWeights() {
+        assertFrequencies(new double[]{0, 5, 0, 0, 1, 0});
+    }
+
+    @Test
+    void singlePositiveWeightIsAlwaysSampled() {
+        assertFrequencies(new double[]{0, 0, 0.1});
+    }
+
+    @Test
+    void rejectsInvalidWeights() {
+        assertThrows(IllegalArgumentException.class, () -> new AliasSampler(new double[0]));
+        assertThrows(IllegalArgumentException.class, () -> new AliasSampler(new double[]{0, 0}));
+        assertThrows(IllegalArgumentException.class, () -> new AliasSampler(new double[]{1, -1}));
+        assertThrows(IllegalArgumentException.class, () -> new AliasSampler(new double[]{1, Double.NaN}));
+    }
+}
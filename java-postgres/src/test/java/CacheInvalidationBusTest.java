@@ -0,0 +1,206 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests payload encoding and handling without a database, and invalidations between two nodes
+ * through the database configured in db.properties. Every bus is a node with its own ID and connections,
+ * so two buses in one JVM exchange notifications like two application nodes.
+ * The two node tests are skipped when the database is not reachable.
+ *
+ * @author Abhishek Inamdar
+ */
+class CacheInvalidationBusTest {
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(15);
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final ProductCache.Loader loader = productId -> {
+        loads.incrementAndGet();
+        return new ProductInformation(productId, "product " + productId, "description", 9.99);
+    };
+
+    private CacheInvalidationBus first;
+    private CacheInvalidationBus second;
+
+    private static void assumeDatabase() {
+        boolean reachable;
+        try (Connection con = DBBase.newDedicatedConnection()) {
+            reachable = con.isValid(5);
+        } catch (SQLException e) {
+            reachable = false;
+        }
+        assumeTrue(reachable, "PostgreSQL from db.properties is not reachable");
+    }
+
+    @Test
+    void encodesAndDecodesPayload() {
+        List<String> payloads = CacheInvalidationBus.encode("node1", Arrays.asList(3, 1, 2),
+                Arrays.asList("user1", "user2"));
+        assertEquals(Collections.singletonList("node1;p=3,1,2;u=user1,user2"), payloads);
+
+        CacheInvalidationBus.Invalidation invalidation = CacheInvalidationBus.decode(payloads.get(0));
+        assertEquals("node1", invalidation.nodeId);
+        assertEquals(Arrays.asList(3, 1, 2), invalidation.productIds);
+        assertEquals(Arrays.asList("user1", "user2"), invalidation.userNames);
+
+        invalidation = CacheInvalidationBus.decode(CacheInvalidationBus.encode("node1",
+                Collections.singletonList(7), Collections.emptyList()).get(0));
+        assertEquals(Collections.singletonList(7), invalidation.productIds);
+        assertTrue(invalidation.userNames.isEmpty());
+        assertTrue(CacheInvalidationBus.encode("node1", Collections.emptyList(), Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    void splitsPayloadsBelowNotifyLimit() {
+        List<Integer> productIds = new ArrayList<>();
+        for (int productId = 1_000_000; productId < 1_005_000; productId++) {
+            productIds.add(productId);
+        }
+        List<String> userNames = new ArrayList<>();
+        for (int userId = 1; userId <= 2000; userId++) {
+            userNames.add(Utility.USER_NAME_PREFIX + userId);
+        }
+        List<String> payloads = CacheInvalidationBus.encode("node1", productIds, userNames);
+        assertTrue(payloads.size() > 1);
+
+        List<Integer> decodedProducts = new ArrayList<>();
+        List<String> decodedUsers = new ArrayList<>();
+        for (String payload : payloads) {
+            assertTrue(payload.getBytes(StandardCharsets.UTF_8).length < CacheInvalidationBus.MAX_PAYLOAD_LENGTH,
+                    "payload of " + payload.length() + " bytes");
+            CacheInvalidationBus.Invalidation invalidation = CacheInvalidationBus.decode(payload);
+            decodedProducts.addAll(invalidation.productIds);
+            decodedUsers.addAll(invalidation.userNames);
+        }
+        assertEquals(productIds, decodedProducts);
+        assertEquals(userNames, decodedUsers);
+    }
+
+    @Test
+    void rejectsMalformedPayloads() {
+        for (String payload : Arrays.asList(null, "", "hello", "node1;p=1", "node1;p=1;u=a;x", ";p=1;u=",
+                "node1;x=1;u=", "node1;p=1;x=", "node1;p=abc;u=", "node1;p=1,,2;u=", "node1;p=99999999999;u=",
+                "node1;p=;u=a,,b")) {
+            assertThrows(IllegalArgumentException.class, () -> CacheInvalidationBus.decode(payload),
+                    String.valueOf(payload));
+        }
+    }
+
+    @Test
+    void handleSkipsMalformedAndOwnPayloads() throws SQLException {
+        ProductCache cache = new ProductCache(1000, 1 << 20);
+        // Threads are not started, payloads are handed to the bus directly
+        first = new CacheInvalidationBus(cache);
+        cache.get(7, loader);
+        cache.get(8, loader);
+
+        first.handle("node1;p=7,oops;u=");
+        first.handle("not an invalidation");
+        assertEquals(2, first.getMalformedNotifications());
+        first.handle(first.getNodeId() + ";p=7;u=");
+        cache.get(7, loader);
+        assertEquals(2, loads.get(), "malformed or own payload evicted a product");
+
+        first.handle("othernode;p=7;u=user1");
+        cache.get(7, loader);
+        cache.get(8, loader);
+        assertEquals(3, loads.get());
+        assertTrue(first.getStats().contains("remoteProductEvictions=1"), first.getStats());
+    }
+
+    @AfterEach
+    void closeBuses() {
+        if (first != null) {
+            first.close();
+        }
+        if (second != null) {
+            second.close();
+        }
+    }
+
+    /**
+     * Publishes from the first node until the second node evicts, since the listener
+     * of the second node may not be listening yet when the first notification is sent
+     */
+    private static boolean publishUntilEvicted(CacheInvalidationBus publisher, ProductCache receiverCache,
+                                               ProductCache.Loader loader, AtomicInteger loads, int productId)
+            throws SQLException, InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            int before = loads.get();
+            publisher.publishProduct(productId);
+            Thread.sleep(200);
+            receiverCache.get(productId, loader);
+            if (loads.get() > before) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void remoteInvalidationEvictsOtherNodeOnly() throws Exception {
+        assumeDatabase();
+        ProductCache firstCache = new ProductCache(1000, 1 << 20);
+        ProductCache secondCache = new ProductCache(1000, 1 << 20);
+        first = new CacheInvalidationBus(firstCache, 20);
+        second = new CacheInvalidationBus(secondCache, 20);
+
+        AtomicInteger firstLoads = new AtomicInteger();
+        ProductCache.Loader firstLoader = productId -> {
+            firstLoads.incrementAndGet();
+            return new ProductInformation(productId, "product " + productId, "description", 9.99);
+        };
+        firstCache.get(7, firstLoader);
+        secondCache.get(7, loader);
+        assertEquals(1, loads.get());
+
+        assertTrue(publishUntilEvicted(first, secondCache, loader, loads, 7),
+                "second node never evicted product 7: " + second.getStats());
+        // Own notifications are ignored, the publisher invalidates locally on its write path
+        firstCache.get(7, firstLoader);
+        assertEquals(1, firstLoads.get());
+
+        // Invalidations flow both ways
+        assertTrue(publishUntilEvicted(second, firstCache, firstLoader, firstLoads, 7),
+                "first node never evicted product 7: " + first.getStats());
+    }
+
+    @Test
+    void closeSendsPendingInvalidations() throws Exception {
+        assumeDatabase();
+        ProductCache secondCache = new ProductCache(1000, 1 << 20);
+        second = new CacheInvalidationBus(secondCache, 20);
+        secondCache.get(9, loader);
+        // Wait until the listener of the second node receives notifications
+        first = new CacheInvalidationBus(new ProductCache(1000, 1 << 20), 20);
+        assertTrue(publishUntilEvicted(first, secondCache, loader, loads, 9));
+
+        // Flushed by close well before the next flush interval
+        CacheInvalidationBus closing = new CacheInvalidationBus(new ProductCache(1000, 1 << 20),
+                TimeUnit.HOURS.toMillis(1));
+        int before = loads.get();
+        closing.publishProduct(9);
+        closing.close();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (loads.get() == before && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            secondCache.get(9, loader);
+        }
+        assertTrue(loads.get() > before, "invalidation pending at close was not sent: " + second.getStats());
+    }
+}
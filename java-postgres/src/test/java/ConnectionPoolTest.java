@@ -0,0 +1,214 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests borrow timeout, validation, idle eviction, release and the isolation cache against fake connections
+ *
+ * @author Abhishek Inamdar
+ */
+class ConnectionPoolTest {
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * Physical connection keeping the session state the pool reads and resets
+     */
+    private static class FakeConnection {
+        private boolean valid = true;
+        private boolean closed = false;
+        private boolean autoCommit = true;
+        private boolean readOnly = false;
+        private int isolation = Connection.TRANSACTION_READ_COMMITTED;
+        private int rollbacks = 0;
+        private int isolationChanges = 0;
+        private final Connection connection = (Connection) Proxy.newProxyInstance(
+                ConnectionPoolTest.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isValid":
+                            return valid && !closed;
+                        case "close":
+                            closed = true;
+                            return null;
+                        case "isClosed":
+                            return closed;
+                        case "getAutoCommit":
+                            return autoCommit;
+                        case "setAutoCommit":
+                            autoCommit = (Boolean) args[0];
+                            return null;
+                        case "rollback":
+                            rollbacks++;
+                            return null;
+                        case "isReadOnly":
+                            return readOnly;
+                        case "setReadOnly":
+                            readOnly = (Boolean) args[0];
+                            return null;
+                        case "getTransactionIsolation":
+                            return isolation;
+                        case "setTransactionIsolation":
+                            isolation = (Integer) args[0];
+                            isolationChanges++;
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "FakeConnection@" + System.identityHashCode(proxy);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private final List<FakeConnection> created = new ArrayList<>();
+    private ConnectionPool pool;
+
+    private ConnectionPool newPool(int minSize, int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis)
+            throws SQLException {
+        pool = new ConnectionPool(() -> {
+            FakeConnection connection = new FakeConnection();
+            created.add(connection);
+            return connection.connection;
+        }, minSize, maxSize, borrowTimeoutMillis, idleTimeoutMillis, 1, 0);
+        return pool;
+    }
+
+    @AfterEach
+    void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void borrowTimesOutWhenExhausted() throws SQLException {
+        ConnectionPool pool = newPool(0, 1, 50, 60_000);
+        Connection first = pool.borrow();
+        SQLException e = assertThrows(SQLException.class, pool::borrow);
+        assertEquals(ConnectionPool.POOL_TIMEOUT_SQL_STATE, e.getSQLState());
+        assertEquals(1, pool.getActiveConnections());
+
+        // The returned session is handed out again
+        first.close();
+        pool.borrow().close();
+        assertEquals(1, created.size());
+        assertEquals(1, pool.getTotalConnections());
+    }
+
+    @Test
+    void replacesInvalidConnectionsOnBorrow() throws SQLException {
+        ConnectionPool pool = newPool(1, 2, 1000, 60_000);
+        assertEquals(1, created.size());
+        FakeConnection broken = created.get(0);
+        broken.valid = false;
+
+        Connection con = pool.borrow();
+        assertEquals(2, created.size());
+        assertTrue(broken.closed, "invalid connection was not discarded");
+        assertEquals(1, pool.getTotalConnections());
+        con.close();
+        assertEquals(1, pool.getIdleConnections());
+    }
+
+    @Test
+    void evictsIdleConnectionsAboveMinSize() throws Exception {
+        ConnectionPool pool = newPool(1, 3, 1000, 50);
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        Connection third = pool.borrow();
+        first.close();
+        second.close();
+        third.close();
+        assertEquals(3, pool.getIdleConnections());
+
+        // The evictor runs every second at most
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (pool.getTotalConnections() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, pool.getTotalConnections());
+        assertEquals(1, pool.getIdleConnections());
+        assertEquals(2, created.stream().filter(connection -> connection.closed).count());
+    }
+
+    @Test
+    void rollsBackAndResetsOnRelease() throws SQLException {
+        ConnectionPool pool = newPool(1, 1, 1000, 60_000);
+        FakeConnection physical = created.get(0);
+
+        Connection con = pool.borrow();
+        con.setAutoCommit(false);
+        con.setReadOnly(true);
+        con.close();
+        assertEquals(1, physical.rollbacks);
+        assertFalse(physical.readOnly);
+        assertTrue(con.isClosed());
+        assertThrows(SQLException.class, con::getAutoCommit);
+        // A second close does not return the session twice
+        con.close();
+        assertEquals(1, pool.getIdleConnections());
+
+        con = pool.borrow();
+        con.setAutoCommit(true);
+        con.close();
+        assertEquals(1, physical.rollbacks);
+        assertFalse(physical.closed);
+    }
+
+    @Test
+    void cachesIsolationPerPhysicalConnection() throws SQLException {
+        ConnectionPool pool = newPool(0, 2, 1000, 60_000);
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        FakeConnection firstPhysical = created.get(0);
+        FakeConnection secondPhysical = created.get(1);
+
+        first.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        first.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        assertEquals(Connection.TRANSACTION_SERIALIZABLE, first.getTransactionIsolation());
+        assertEquals(1, firstPhysical.isolationChanges);
+        assertEquals(Connection.TRANSACTION_READ_COMMITTED, second.getTransactionIsolation());
+        second.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        assertEquals(1, secondPhysical.isolationChanges);
+        first.close();
+        second.close();
+
+        // The level stays cached across leases of the same session
+        Connection again = pool.borrow();
+        again.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        assertEquals(2, firstPhysical.isolationChanges + secondPhysical.isolationChanges);
+        again.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        assertEquals(3, firstPhysical.isolationChanges + secondPhysical.isolationChanges);
+        again.close();
+    }
+
+    @Test
+    void forgetsIsolationOfDiscardedConnections() throws SQLException {
+        ConnectionPool pool = newPool(0, 1, 1000, 60_000);
+        Connection con = pool.borrow();
+        con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        con.close();
+        created.get(0).valid = false;
+
+        con = pool.borrow();
+        FakeConnection replacement = created.get(1);
+        con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        assertEquals(1, replacement.isolationChanges);
+        assertEquals(Connection.TRANSACTION_SERIALIZABLE, replacement.isolation);
+        con.close();
+    }
+}
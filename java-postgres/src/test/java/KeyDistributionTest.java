@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests key ranges and skew of the key distributions
+ *
+ * @author Abhishek Inamdar
+ */
+class KeyDistributionTest {
+    private static final int SAMPLES = 200_000;
+
+    private static int[] histogram(KeyDistribution distribution, int maxKey) {
+        int[] counts = new int[maxKey + 1];
+        for (int i = 0; i < SAMPLES; i++) {
+            int key = distribution.next();
+            assertTrue(key >= 1 && key <= maxKey, "key out of range: " + key);
+            counts[key]++;
+        }
+        return counts;
+    }
+
+    @Test
+    void parsesSpecifications() {
+        assertEquals("uniform", KeyDistribution.parse("uniform", 10).toString());
+        assertEquals("zipfian:0.99", KeyDistribution.parse("zipfian", 10).toString());
+        assertEquals("zipfian:0.5", KeyDistribution.parse(" Zipfian:0.5 ", 10).toString());
+        assertEquals("hotspot:0.1:0.9", KeyDistribution.parse("hotspot:0.1:0.9", 10).toString());
+        assertEquals("latest:0.99", KeyDistribution.parse("latest", 10).toString());
+        assertThrows(IllegalArgumentException.class, () -> KeyDistribution.parse("gaussian", 10));
+        assertThrows(IllegalArgumentException.class, () -> KeyDistribution.parse("zipfian:1.0", 10));
+        assertThrows(IllegalArgumentException.class, () -> KeyDistribution.parse("hotspot:0", 10));
+        assertThrows(IllegalArgumentException.class, () -> KeyDistribution.parse("uniform", 0));
+    }
+
+    @Test
+    void uniformCoversAllKeys() {
+        int[] counts = histogram(KeyDistribution.parse("uniform", 100), 100);
+        for (int key = 1; key <= 100; key++) {
+            assertTrue(counts[key] > SAMPLES / 100 / 2, "key " + key + " chosen " + counts[key] + " times");
+        }
+    }
+
+    @Test
+    void zipfianRanksFollowPowerLaw() {
+        int itemCount = 1000;
+        double theta = 0.99;
+        KeyDistribution.Zipfian zipfian = new KeyDistribution.Zipfian(new KeyDistribution.KeySpace(itemCount),
+                theta, false);
+        double zetaN = 0;
+        for (int i = 1; i <= itemCount; i++) {
+            zetaN += 1 / Math.pow(i, theta);
+        }
+        int[] counts = histogram(zipfian, itemCount);
+        assertEquals(1 / zetaN, (double) counts[1] / SAMPLES, 0.01);
+        assertEquals(1 / zetaN / Math.pow(2, theta), (double) counts[2] / SAMPLES, 0.01);
+        int top10 = 0;
+        for (int rank = 1; rank <= 10; rank++) {
+            top10 += counts[rank];
+        }
+        // 1% of the keys take about 39% of the operations
+        assertTrue(top10 > SAMPLES * 0.3, "top 10 ranks chosen " + top10 + " times");
+    }
+
+    @Test
+    void scrambledZipfianSpreadsHotKeys() {
+        int itemCount = 1000;
+        KeyDistribution.Zipfian zipfian = new KeyDistribution.Zipfian(new KeyDistribution.KeySpace(itemCount),
+                0.99, true);
+        int[] counts = histogram(zipfian, itemCount);
+        int hottest = 1;
+        for (int key = 1; key <= itemCount; key++) {
+            if (counts[key] > counts[hottest]) {
+                hottest = key;
+            }
+        }
+        assertTrue(counts[hottest] > SAMPLES * 0.1, "hottest key chosen " + counts[hottest] + " times");
+        // The affine map is a bijection, so scrambling keeps every key reachable
+        Set<Integer> keys = new HashSet<>();
+        KeyDistribution uniformRanks = new KeyDistribution.Zipfian(new KeyDistribution.KeySpace(7), 0.01, true);
+        for (int i = 0; i < 10_000; i++) {
+            keys.add(uniformRanks.next());
+        }
+        assertEquals(7, keys.size());
+    }
+
+    @Test
+    void hotspotSendsHotOperationsToHotSet() {
+        int[] counts = histogram(KeyDistribution.parse("hotspot:0.2:0.8", 100), 100);
+        int hot = 0;
+        for (int key = 1; key <= 20; key++) {
+            hot += counts[key];
+        }
+        assertEquals(0.8, (double) hot / SAMPLES, 0.01);
+        for (int key = 21; key <= 100; key++) {
+            assertTrue(counts[key] > 0, "cold key " + key + " never chosen");
+        }
+    }
+
+    @Test
+    void latestFollowsGrowingKeySpace() {
+        KeyDistribution.KeySpace keySpace = new KeyDistribution.KeySpace(100);
+        KeyDistribution latest = KeyDistribution.parse("latest", keySpace);
+        KeyDistribution uniform = KeyDistribution.parse("uniform", keySpace);
+        assertEquals(101, latest.nextNewKey());
+        int[] counts = histogram(latest, 100);
+        assertTrue(counts[100] > counts[1], "newest key is not the most popular");
+
+        keySpace.advance(latest.nextNewKey());
+        keySpace.advance(150);
+        // Keys inserted out of order never move the highest key back
+        keySpace.advance(120);
+        assertEquals(150, keySpace.getMaxKey());
+        assertEquals(151, latest.nextNewKey());
+        int newest = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            int key = latest.next();
+            // the window keeps the itemCount most recent keys
+            assertTrue(key >= 51 && key <= 150, "key out of window: " + key);
+            if (key == 150) {
+                newest++;
+            }
+            assertTrue(uniform.next() <= 100);
+        }
+        assertEquals(counts[100], newest, SAMPLES * 0.01);
+    }
+
+    @Test
+    void nonLatestDistributionsReuseExistingKeysForInserts() {
+        KeyDistribution uniform = KeyDistribution.parse("uniform", 10);
+        for (int i = 0; i < 1000; i++) {
+            int key = uniform.nextNewKey();
+            assertTrue(key >= 1 && key <= 10);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests merging of per thread and striped recorders into intervals and totals
+ *
+ * @author Abhishek Inamdar
+ */
+class LatencyRecorderTest {
+
+    private static void recordFromThreads(LatencyRecorder recorder, int threadCount, int perThread)
+            throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    recorder.record(0, TimeUnit.MILLISECONDS.toNanos(1));
+                    recorder.record(1, TimeUnit.MILLISECONDS.toNanos(10));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    void mergesRecordersOfAllThreads() throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recordFromThreads(recorder, 4, 1000);
+
+        Histogram[] interval = recorder.nextInterval();
+        assertEquals(Utility.OPERATIONS.length, interval.length);
+        assertEquals(4000, interval[0].getTotalCount());
+        assertEquals(4000, interval[1].getTotalCount());
+        assertEquals(0, interval[2].getTotalCount());
+        assertEquals(1.0, LatencyRecorder.toMillis(interval[0].getValueAtPercentile(99)), 0.01);
+        assertEquals(10.0, LatencyRecorder.toMillis(interval[1].getValueAtPercentile(99)), 0.01);
+    }
+
+    @Test
+    void stripedRecordersMergeLikePerThreadRecorders() throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder(3);
+        recordFromThreads(recorder, 8, 500);
+
+        Histogram[] interval = recorder.nextInterval();
+        assertEquals(4000, interval[0].getTotalCount());
+        assertEquals(4000, interval[1].getTotalCount());
+    }
+
+    @Test
+    void intervalsAreResetAndTotalAccumulates() throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recordFromThreads(recorder, 2, 100);
+        assertEquals(200, recorder.nextInterval()[0].getTotalCount());
+
+        recordFromThreads(recorder, 1, 50);
+        assertEquals(50, recorder.nextInterval()[0].getTotalCount());
+        assertEquals(0, recorder.nextInterval()[0].getTotalCount());
+        assertEquals(250, recorder.getTotal()[0].getTotalCount());
+    }
+
+    @Test
+    void clampsLatenciesToTrackableRange() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(0, -5);
+        recorder.record(0, LatencyRecorder.HIGHEST_TRACKABLE_NANOS * 2);
+
+        Histogram interval = recorder.nextInterval()[0];
+        assertEquals(2, interval.getTotalCount());
+        assertEquals(0, interval.getMinValue());
+        assertTrue(interval.getMaxValue() >= LatencyRecorder.HIGHEST_TRACKABLE_NANOS);
+        assertTrue(interval.valuesAreEquivalent(LatencyRecorder.HIGHEST_TRACKABLE_NANOS, interval.getMaxValue()));
+    }
+}
@@ -0,0 +1,160 @@
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests read-through caching, the epoch guard against loads overlapping invalidations and eviction
+ *
+ * @author Abhishek Inamdar
+ */
+class ProductCacheTest {
+
+    /**
+     * Loader counting its loads, every load returns a new object
+     */
+    private static class CountingLoader implements ProductCache.Loader {
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public ProductInformation load(int productId) {
+            loads.incrementAndGet();
+            ProductInformation product = new ProductInformation(productId, "product " + productId,
+                    "description", 9.99);
+            product.addReview(new Review("user", productId, "review", 4, LocalDateTime.now()));
+            return product;
+        }
+    }
+
+    @Test
+    void cachesLoadedProducts() throws SQLException {
+        ProductCache cache = new ProductCache(1000, 1 << 20);
+        CountingLoader loader = new CountingLoader();
+        ProductInformation first = cache.get(7, loader);
+        assertSame(first, cache.get(7, loader));
+        assertEquals(1, loader.loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void doesNotCacheMissingProducts() throws SQLException {
+        ProductCache cache = new ProductCache(1000, 1 << 20);
+        AtomicInteger loads = new AtomicInteger();
+        ProductCache.Loader missing = productId -> {
+            loads.incrementAndGet();
+            return null;
+        };
+        assertNull(cache.get(7, missing));
+        assertNull(cache.get(7, missing));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidateRemovesProduct() throws SQLException {
+        ProductCache cache = new ProductCache(1000, 1 << 20);
+        CountingLoader loader = new CountingLoader();
+        cache.get(7, loader);
+        cache.invalidate(7);
+        cache.get(7, loader);
+        cache.clear();
+        cache.get(7, loader);
+        assertEquals(3, loader.loads.get());
+    }
+
+    @Test
+    void loadOverlappingInvalidationIsNotCached() throws SQLException {
+        ProductCache cache = new ProductCache(1000, 1 << 20);
+        CountingLoader loader = new CountingLoader();
+        // A write commits and invalidates while the value read before it is being loaded
+        ProductCache.Loader racing = productId -> {
+            ProductInformation stale = loader.load(productId);
+            cache.invalidate(productId);
+            return stale;
+        };
+        ProductInformation stale = cache.get(7, racing);
+        ProductInformation fresh = cache.get(7, loader);
+        assertTrue(stale != fresh, "value loaded before the invalidation was cached");
+        assertSame(fresh, cache.get(7, loader));
+        assertEquals(2, loader.loads.get());
+
+        ProductCache.Loader cleared = productId -> {
+            ProductInformation value = loader.load(productId);
+            cache.clear();
+            return value;
+        };
+        cache.get(8, cleared);
+        cache.get(8, loader);
+        assertEquals(4, loader.loads.get());
+    }
+
+    @Test
+    void loadOverlappingInvalidationFromAnotherThreadIsNotCached() throws Exception {
+        ProductCache cache = new ProductCache(1000, 1 << 20);
+        CountingLoader loader = new CountingLoader();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ProductInformation> stale = executor.submit(() -> cache.get(7, productId -> {
+                ProductInformation value = loader.load(productId);
+                loading.countDown();
+                try {
+                    assertTrue(invalidated.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return value;
+            }));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            cache.invalidate(7);
+            invalidated.countDown();
+            ProductInformation staleValue = stale.get(10, TimeUnit.SECONDS);
+            assertTrue(staleValue != cache.get(7, loader), "value loaded before the invalidation was cached");
+            assertEquals(2, loader.loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void staysWithinMaxEntries() throws SQLException {
+        ProductCache cache = new ProductCache(64, 1 << 20);
+        CountingLoader loader = new CountingLoader();
+        for (int productId = 1; productId <= 1000; productId++) {
+            cache.get(productId, loader);
+        }
+        long hitsBefore = cache.getHits();
+        for (int productId = 1; productId <= 1000; productId++) {
+            cache.get(productId, loader);
+        }
+        assertTrue(cache.getHits() - hitsBefore <= 64, "more than 64 products cached");
+    }
+
+    @Test
+    void staysWithinMaxBytes() throws SQLException {
+        CountingLoader loader = new CountingLoader();
+        long productSize = ProductCache.estimateSize(loader.load(1));
+        // About two products per segment
+        ProductCache cache = new ProductCache(100_000, 64 * 2 * productSize);
+        for (int productId = 1; productId <= 1000; productId++) {
+            cache.get(productId, loader);
+        }
+        long hitsBefore = cache.getHits();
+        for (int productId = 1; productId <= 1000; productId++) {
+            cache.get(productId, loader);
+        }
+        assertTrue(cache.getHits() - hitsBefore <= 64 * 2, "more than the byte limit cached");
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests retry decisions and backoff bounds
+ *
+ * @author Abhishek Inamdar
+ */
+class RetryPolicyTest {
+
+    private static SQLException failure(String sqlState) {
+        return new SQLException("failure", sqlState);
+    }
+
+    @Test
+    void retriesSerializationFailuresAndDeadlocksOnly() {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0);
+        assertTrue(policy.isRetryable(failure(Utility.SERIALIZATION_FAILURE_SQL_STATE)));
+        assertTrue(policy.isRetryable(failure(Utility.DEADLOCK_SQL_STATE)));
+        assertFalse(policy.isRetryable(failure("23505")));
+        assertFalse(policy.isRetryable(failure(RetryPolicy.INTERRUPTED_SQL_STATE)));
+        assertFalse(policy.isRetryable(failure(null)));
+    }
+
+    @Test
+    void stopsAfterMaxAttempts() {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0);
+        SQLException e = failure(Utility.SERIALIZATION_FAILURE_SQL_STATE);
+        assertTrue(policy.shouldRetry(e, 1));
+        assertTrue(policy.shouldRetry(e, 2));
+        assertFalse(policy.shouldRetry(e, 3));
+        assertFalse(new RetryPolicy(1, 0, 0).shouldRetry(e, 1));
+    }
+
+    @Test
+    void rejectsLessThanOneAttempt() {
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(0, 5, 200));
+    }
+
+    @Test
+    void backoffStaysBelowMaxDelay() throws SQLException {
+        RetryPolicy policy = new RetryPolicy(50, 1, 20);
+        for (int attempt = 1; attempt <= 40; attempt++) {
+            long start = System.nanoTime();
+            policy.backoff(attempt);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // Generous slack for sleep overshoot on a loaded machine
+            assertTrue(elapsedMillis < 20 + 200, "attempt " + attempt + " slept " + elapsedMillis + "ms");
+        }
+    }
+
+    @Test
+    void backoffDoesNotSleepWithoutDelay() throws SQLException {
+        Thread.currentThread().interrupt();
+        try {
+            // Would throw if it tried to sleep
+            new RetryPolicy(5, 0, 200).backoff(3);
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    void interruptedBackoffIsNotRetryable() {
+        RetryPolicy policy = new RetryPolicy(5, 1000, 1000);
+        Thread.currentThread().interrupt();
+        SQLException e;
+        try {
+            e = assertThrows(SQLException.class, () -> policy.backoff(1));
+        } finally {
+            // backoff restores the interrupt, clear it so it does not leak into other tests
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(RetryPolicy.INTERRUPTED_SQL_STATE, e.getSQLState());
+        assertFalse(policy.shouldRetry(e, 1));
+    }
+}
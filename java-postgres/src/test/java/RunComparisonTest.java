@@ -0,0 +1,113 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests Welch's t-test against known t-distribution values and reading of results files
+ *
+ * @author Abhishek Inamdar
+ */
+class RunComparisonTest {
+
+    private static RunComparison.Sample sample(double... values) {
+        RunComparison.Sample sample = new RunComparison.Sample();
+        for (double value : values) {
+            sample.add(value);
+        }
+        return sample;
+    }
+
+    @Test
+    void logGammaMatchesFactorials() {
+        assertEquals(0, RunComparison.logGamma(1), 1e-10);
+        assertEquals(Math.log(24), RunComparison.logGamma(5), 1e-10);
+        assertEquals(Math.log(3628800), RunComparison.logGamma(11), 1e-9);
+        assertEquals(0.5 * Math.log(Math.PI), RunComparison.logGamma(0.5), 1e-10);
+    }
+
+    @Test
+    void incompleteBetaMatchesClosedForms() {
+        assertEquals(0, RunComparison.regularizedIncompleteBeta(0, 2, 3));
+        assertEquals(1, RunComparison.regularizedIncompleteBeta(1, 2, 3));
+        // I_x(a, 1) = x^a
+        assertEquals(Math.pow(0.3, 2.5), RunComparison.regularizedIncompleteBeta(0.3, 2.5, 1), 1e-10);
+        // I_x(1, b) = 1 - (1 - x)^b
+        assertEquals(1 - Math.pow(0.8, 4), RunComparison.regularizedIncompleteBeta(0.2, 1, 4), 1e-10);
+        // Symmetric around 0.5 when a = b, on both sides of the continued fraction switch
+        assertEquals(0.5, RunComparison.regularizedIncompleteBeta(0.5, 7, 7), 1e-10);
+        assertEquals(1, RunComparison.regularizedIncompleteBeta(0.9, 4, 4)
+                + RunComparison.regularizedIncompleteBeta(0.1, 4, 4), 1e-10);
+    }
+
+    @Test
+    void incompleteBetaGivesStudentTPValues() {
+        // Two sided p-value of t with df degrees of freedom is I_{df/(df+t^2)}(df/2, 1/2)
+        assertEquals(0.5, RunComparison.regularizedIncompleteBeta(1 / (1 + 1.0), 0.5, 0.5), 1e-9);
+        double t = 2.228138851986;
+        assertEquals(0.05, RunComparison.regularizedIncompleteBeta(10 / (10 + t * t), 5, 0.5), 1e-6);
+    }
+
+    @Test
+    void welchPValueOfKnownSamples() {
+        // means 3 and 5, variances 2.5, so t = -2 with 8 degrees of freedom
+        double p = RunComparison.welchPValue(sample(1, 2, 3, 4, 5), sample(3, 4, 5, 6, 7));
+        assertEquals(0.0805162, p, 1e-6);
+        assertEquals(p, RunComparison.welchPValue(sample(3, 4, 5, 6, 7), sample(1, 2, 3, 4, 5)), 1e-12);
+    }
+
+    @Test
+    void welchPValueOfIdenticalAndConstantSamples() {
+        assertEquals(1, RunComparison.welchPValue(sample(1, 2, 3), sample(1, 2, 3)), 1e-12);
+        assertEquals(1, RunComparison.welchPValue(sample(4, 4, 4), sample(4, 4)));
+        assertEquals(0, RunComparison.welchPValue(sample(4, 4, 4), sample(5, 5)));
+    }
+
+    @Test
+    void flagsSignificantChangesByDirection() {
+        RunComparison.Sample low = sample(100, 101, 99, 100, 102, 98);
+        RunComparison.Sample high = sample(120, 121, 119, 120, 122, 118);
+        assertTrue(RunComparison.compare("k", "ops/sec", low, high, 0.05, true).endsWith("IMPROVEMENT"));
+        assertTrue(RunComparison.compare("k", "p99 ms", low, high, 0.05, false).endsWith("REGRESSION"));
+        String unchanged = RunComparison.compare("k", "ops/sec", low, low, 0.05, true);
+        assertFalse(unchanged.contains("IMPROVEMENT") || unchanged.contains("REGRESSION"), unchanged);
+        assertTrue(RunComparison.compare("k", "ops/sec", sample(1), high, 0.05, true)
+                .contains("not enough intervals (1, 6)"));
+    }
+
+    @Test
+    void readsCsvAndJsonlRecords(@TempDir Path directory) throws IOException {
+        Path csv = directory.resolve("run." + ResultsWriter.CSV);
+        Files.write(csv, Arrays.asList("profile,threads,operation,ops,opsPerSec,p99Ms",
+                "default,2,submitOrder,10,5.0,1.5",
+                "default,2,submitOrder,0,0.0,0.0",
+                "default,10,postReview,4,2.0,3.0"), StandardCharsets.UTF_8);
+        Path jsonl = directory.resolve("run." + ResultsWriter.JSONL);
+        Files.write(jsonl, Arrays.asList(
+                "{\"profile\":\"a \\\"quoted\\\" name\",\"threads\":2,\"operation\":\"submitOrder\",\"ops\":10,"
+                        + "\"opsPerSec\":5.0,\"p99Ms\":1.5}",
+                ""), StandardCharsets.UTF_8);
+
+        List<Map<String, String>> csvRecords = RunComparison.readRecords(csv);
+        assertEquals(3, csvRecords.size());
+        assertEquals("submitOrder", csvRecords.get(0).get("operation"));
+        List<Map<String, String>> jsonRecords = RunComparison.readRecords(jsonl);
+        assertEquals(1, jsonRecords.size());
+        assertEquals("a \"quoted\" name", jsonRecords.get(0).get("profile"));
+        assertEquals("10", jsonRecords.get(0).get("ops"));
+
+        Map<String, RunComparison.Series> series = RunComparison.group(csvRecords);
+        assertEquals(Arrays.asList("default/0002/submitOrder", "default/0010/postReview"),
+                Arrays.asList(series.keySet().toArray()));
+    }
+}
@@ -0,0 +1,129 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests key ranges of the generators and propagation of failures with loaders collecting chunks in memory
+ *
+ * @author Abhishek Inamdar
+ */
+class SeedPipelineTest {
+    private static final String COPY_SQL = "COPY KEYS(KEY) FROM STDIN";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final List<List<Integer>> generated = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> loaded = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Writer of one generator thread recording the keys it writes, one row per key
+     */
+    private BulkLoader.RowWriter recordingWriter() {
+        List<Integer> keys = new ArrayList<>();
+        generated.add(keys);
+        return (key, out) -> {
+            keys.add(key);
+            out.append(key).append('\n');
+        };
+    }
+
+    /**
+     * Loader parsing the rows of every chunk into loaded
+     */
+    private long collect(String copySql, SeedPipeline.Chunks chunks) throws InterruptedException {
+        long rows = 0;
+        byte[] chunk;
+        while ((chunk = chunks.next()) != null) {
+            for (String row : new String(chunk, StandardCharsets.UTF_8).split("\n")) {
+                loaded.add(Integer.parseInt(row));
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private SeedPipeline pipeline(int generators, int loaders, SeedPipeline.ChunkLoader loader) {
+        return new SeedPipeline(generators, loaders, 2, () -> null, loader);
+    }
+
+    @Test
+    void generatorsOwnDisjointKeyRanges() throws SQLException {
+        // Enough rows for several chunks per generator
+        long rows = pipeline(4, 3, this::collect).load(COPY_SQL, 1, 100_001, fairy -> recordingWriter());
+        assertEquals(100_001, rows);
+
+        List<Integer> sorted = new ArrayList<>(loaded);
+        Collections.sort(sorted);
+        assertEquals(100_001, sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i + 1, sorted.get(i), "key loaded twice or missing");
+        }
+
+        assertEquals(4, generated.size());
+        for (List<Integer> keys : generated) {
+            assertTrue(keys.size() == 25_000 || keys.size() == 25_001, "unbalanced range of " + keys.size());
+            for (int i = 1; i < keys.size(); i++) {
+                assertEquals(keys.get(0) + i, keys.get(i), "range is not contiguous");
+            }
+        }
+    }
+
+    @Test
+    void startsNoMoreGeneratorsThanKeys() throws SQLException {
+        assertEquals(3, pipeline(8, 2, this::collect).load(COPY_SQL, 5, 7, fairy -> recordingWriter()));
+        assertEquals(3, generated.size());
+        List<Integer> sorted = new ArrayList<>(loaded);
+        Collections.sort(sorted);
+        assertEquals(Arrays.asList(5, 6, 7), sorted);
+    }
+
+    @Test
+    void loaderFailureStopsGeneratorsAndIsThrown() {
+        SQLException failure = new SQLException("copy failed", "23505");
+        SeedPipeline pipeline = pipeline(4, 2, (copySql, chunks) -> {
+            if (chunks.next() != null) {
+                throw failure;
+            }
+            return 0;
+        });
+        // Generators would write for a long time if they did not stop on the failure
+        BulkLoader.RowWriter writer = (key, out) -> out.append(key).append('\n');
+        SQLException thrown = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(SQLException.class,
+                () -> pipeline.load(COPY_SQL, 1, Integer.MAX_VALUE - 1, fairy -> writer)));
+        assertSame(failure, thrown);
+    }
+
+    @Test
+    void generatorFailureStopsLoadersAndIsThrown() {
+        IllegalStateException failure = new IllegalStateException("generator failed");
+        AtomicBoolean loaderSawFailure = new AtomicBoolean();
+        SeedPipeline pipeline = pipeline(2, 2, (copySql, chunks) -> {
+            long rows = collect(copySql, chunks);
+            if (chunks.failed()) {
+                loaderSawFailure.set(true);
+            }
+            return rows;
+        });
+        SQLException thrown = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(SQLException.class,
+                () -> pipeline.load(COPY_SQL, 1, 100_000, fairy -> (key, out) -> {
+                    if (key == 70_000) {
+                        throw failure;
+                    }
+                    out.append(key).append('\n');
+                })));
+        assertSame(failure, thrown.getCause());
+        assertTrue(loaderSawFailure.get(), "loaders were not told about the failure");
+    }
+}
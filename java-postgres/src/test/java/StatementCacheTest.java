@@ -0,0 +1,179 @@
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests LRU eviction and check out of cached statements against a fake connection
+ *
+ * @author Abhishek Inamdar
+ */
+class StatementCacheTest {
+
+    /**
+     * Connection whose prepareStatement creates fake statements that remember being closed
+     */
+    private static class FakeConnection {
+        private final List<String> prepared = new ArrayList<>();
+        private final Map<PreparedStatement, Boolean> closed = new HashMap<>();
+        private final Connection connection = (Connection) Proxy.newProxyInstance(
+                StatementCacheTest.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("prepareStatement".equals(method.getName())) {
+                        prepared.add((String) args[0]);
+                        return newStatement();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        private PreparedStatement newStatement() {
+            PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCacheTest.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                closed.put((PreparedStatement) proxy, true);
+                                return null;
+                            case "isClosed":
+                                return closed.get(proxy);
+                            case "clearParameters":
+                                return null;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+            closed.put(statement, false);
+            return statement;
+        }
+
+        private long closedCount() {
+            return closed.values().stream().filter(Boolean::booleanValue).count();
+        }
+    }
+
+    private static void use(StatementCache cache, String sql) throws SQLException {
+        cache.prepare(sql).close();
+    }
+
+    @Test
+    void reusesStatementOfSameSql() throws SQLException {
+        FakeConnection connection = new FakeConnection();
+        StatementCache cache = new StatementCache(connection.connection, 4);
+        use(cache, "a");
+        use(cache, "a");
+        use(cache, "b");
+        use(cache, "a");
+        assertEquals(2, connection.prepared.size());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws SQLException {
+        FakeConnection connection = new FakeConnection();
+        StatementCache cache = new StatementCache(connection.connection, 2);
+        use(cache, "a");
+        use(cache, "b");
+        use(cache, "a");
+        use(cache, "c");
+        assertEquals(2, cache.size());
+        assertEquals(1, connection.closedCount());
+
+        // b was evicted, a and c are still cached
+        use(cache, "a");
+        use(cache, "c");
+        assertEquals(3, connection.prepared.size());
+        use(cache, "b");
+        assertEquals(4, connection.prepared.size());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void neverEvictsStatementsInUse() throws SQLException {
+        FakeConnection connection = new FakeConnection();
+        StatementCache cache = new StatementCache(connection.connection, 1);
+        PreparedStatement a = cache.prepare("a");
+        PreparedStatement b = cache.prepare("b");
+        assertEquals(2, cache.size());
+        assertEquals(0, connection.closedCount());
+        assertFalse(a.isClosed());
+
+        // checking in a evicts it, as it is the least recently used free statement
+        a.close();
+        assertEquals(1, cache.size());
+        assertEquals(1, connection.closedCount());
+        assertTrue(a.isClosed());
+        assertThrows(SQLException.class, a::clearParameters);
+
+        b.close();
+        assertEquals(1, cache.size());
+        use(cache, "b");
+        assertEquals(2, connection.prepared.size());
+    }
+
+    @Test
+    void sizeStaysBoundedOnceStatementsAreCheckedIn() throws SQLException {
+        FakeConnection connection = new FakeConnection();
+        StatementCache cache = new StatementCache(connection.connection, 8);
+        List<PreparedStatement> open = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            open.add(cache.prepare("sql" + i));
+        }
+        assertEquals(20, cache.size());
+        for (PreparedStatement statement : open) {
+            statement.close();
+        }
+        assertEquals(8, cache.size());
+        assertEquals(12, connection.closedCount());
+        for (int i = 0; i < 100; i++) {
+            use(cache, "sql" + (i % 30));
+            assertTrue(cache.size() <= 8);
+        }
+    }
+
+    @Test
+    void returnsUncachedStatementWhenCachedOneIsInUse() throws SQLException {
+        FakeConnection connection = new FakeConnection();
+        StatementCache cache = new StatementCache(connection.connection, 4);
+        PreparedStatement first = cache.prepare("a");
+        PreparedStatement second = cache.prepare("a");
+        assertNotSame(first, second);
+        assertEquals(2, connection.prepared.size());
+        assertEquals(1, cache.size());
+
+        // the uncached statement is closed for real, the cached one is checked in
+        second.close();
+        first.close();
+        assertEquals(1, connection.closedCount());
+        use(cache, "a");
+        assertEquals(2, connection.prepared.size());
+    }
+
+    @Test
+    void closeReleasesAllStatements() throws SQLException {
+        FakeConnection connection = new FakeConnection();
+        StatementCache cache = new StatementCache(connection.connection, 4);
+        PreparedStatement inUse = cache.prepare("a");
+        use(cache, "b");
+        cache.close();
+        assertEquals(0, cache.size());
+        assertEquals(2, connection.closedCount());
+        inUse.close();
+        assertEquals(2, connection.closedCount());
+    }
+}
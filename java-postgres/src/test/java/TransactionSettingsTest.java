@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests isolation parsing, the AUTOCOMMIT and DEFERRABLE rules and the calls made by apply on a fake connection
+ *
+ * @author Abhishek Inamdar
+ */
+class TransactionSettingsTest {
+    private final List<String> properties = new ArrayList<>();
+
+    /**
+     * Sets a system property, which overrides db.properties, until the end of the test
+     */
+    private void setProperty(String name, String value) {
+        properties.add(name);
+        System.setProperty(name, value);
+    }
+
+    @AfterEach
+    void clearProperties() {
+        for (String name : properties) {
+            System.clearProperty(name);
+        }
+    }
+
+    /**
+     * Returns a connection recording the calls made to it and the SQL executed by its statements
+     */
+    private static Connection recordingConnection(List<String> calls) {
+        Statement statement = (Statement) Proxy.newProxyInstance(TransactionSettingsTest.class.getClassLoader(),
+                new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "execute":
+                            calls.add("execute " + args[0]);
+                            return false;
+                        case "close":
+                            calls.add("closeStatement");
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (Connection) Proxy.newProxyInstance(TransactionSettingsTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if ("createStatement".equals(method.getName())) {
+                        return statement;
+                    }
+                    calls.add(method.getName() + (args == null ? "" : " " + args[0]));
+                    return null;
+                });
+    }
+
+    @Test
+    void parsesIsolationLevels() {
+        assertEquals(Connection.TRANSACTION_READ_UNCOMMITTED, TransactionSettings.parseIsolation("READ_UNCOMMITTED"));
+        assertEquals(Connection.TRANSACTION_READ_COMMITTED, TransactionSettings.parseIsolation("read committed"));
+        assertEquals(Connection.TRANSACTION_REPEATABLE_READ, TransactionSettings.parseIsolation("Repeatable_Read"));
+        assertEquals(Connection.TRANSACTION_SERIALIZABLE, TransactionSettings.parseIsolation(" serializable "));
+        for (String value : Arrays.asList("", "SNAPSHOT", "READCOMMITTED")) {
+            assertThrows(IllegalArgumentException.class, () -> TransactionSettings.parseIsolation(value), value);
+        }
+    }
+
+    @Test
+    void deferrableRequiresSerializableReadOnly() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TransactionSettings(Connection.TRANSACTION_SERIALIZABLE, false, true, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TransactionSettings(Connection.TRANSACTION_REPEATABLE_READ, true, true, false));
+        assertDoesNotThrow(() -> new TransactionSettings(Connection.TRANSACTION_SERIALIZABLE, true, true, false));
+        assertDoesNotThrow(() -> new TransactionSettings(Connection.TRANSACTION_REPEATABLE_READ, true, false, false));
+    }
+
+    @Test
+    void autoCommitOnlyForReadOperations() {
+        setProperty("AUTOCOMMIT", "true");
+        for (String operation : Utility.OPERATIONS) {
+            if (TransactionSettings.AUTOCOMMIT_OPERATIONS.contains(operation)) {
+                assertTrue(TransactionSettings.fromProperties(operation).isAutoCommit(), operation);
+            } else {
+                assertThrows(IllegalArgumentException.class, () -> TransactionSettings.fromProperties(operation),
+                        operation);
+            }
+        }
+        setProperty("AUTOCOMMIT." + Utility.SUBMIT_ORDER, "false");
+        assertFalse(TransactionSettings.fromProperties(Utility.SUBMIT_ORDER).isAutoCommit());
+    }
+
+    @Test
+    void operationPropertiesOverrideDefaults() throws Exception {
+        setProperty("ISOLATION", "READ_COMMITTED");
+        setProperty("ISOLATION." + Utility.GET_PRODUCT_REVIEWS, "REPEATABLE_READ");
+        setProperty("READ_ONLY." + Utility.GET_PRODUCT_REVIEWS, "true");
+
+        List<String> calls = new ArrayList<>();
+        TransactionSettings.fromProperties(Utility.GET_PRODUCT_REVIEWS).apply(recordingConnection(calls));
+        assertEquals(Arrays.asList("setAutoCommit false",
+                "setTransactionIsolation " + Connection.TRANSACTION_REPEATABLE_READ, "setReadOnly true"), calls);
+
+        calls.clear();
+        TransactionSettings.fromProperties(Utility.SUBMIT_ORDER).apply(recordingConnection(calls));
+        assertEquals(Arrays.asList("setAutoCommit false",
+                "setTransactionIsolation " + Connection.TRANSACTION_READ_COMMITTED, "setReadOnly false"), calls);
+    }
+
+    @Test
+    void deferrableIsSetOnlyInExplicitTransactions() throws Exception {
+        List<String> calls = new ArrayList<>();
+        new TransactionSettings(Connection.TRANSACTION_SERIALIZABLE, true, true, false)
+                .apply(recordingConnection(calls));
+        assertEquals(Arrays.asList("execute " + TransactionSettings.SET_DEFERRABLE, "closeStatement"),
+                calls.subList(3, calls.size()));
+
+        calls.clear();
+        new TransactionSettings(Connection.TRANSACTION_SERIALIZABLE, true, true, true)
+                .apply(recordingConnection(calls));
+        assertEquals(Collections.emptyList(), calls.subList(3, calls.size()));
+    }
+}
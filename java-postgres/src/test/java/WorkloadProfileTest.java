@@ -0,0 +1,66 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests profile lookup and precedence of profile properties
+ *
+ * @author Abhishek Inamdar
+ */
+class WorkloadProfileTest {
+
+    @Test
+    void loadsProfileFromFilePath(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("checkout.properties");
+        Files.write(file, Arrays.asList("WEIGHT.submitOrder==1", "THREADS==2, 4-6", "WARMUP_SECONDS==7",
+                "# comment without separator"), StandardCharsets.UTF_8);
+
+        WorkloadProfile profile = WorkloadProfile.load(file.toString());
+        assertEquals("checkout", profile.getName());
+        assertArrayEquals(new int[]{2, 4, 5, 6}, profile.getThreadCounts());
+        assertEquals(7, profile.getWarmupSeconds());
+
+        AliasSampler sampler = profile.operationSampler();
+        int submitOrder = Utility.operationIndex(Utility.SUBMIT_ORDER);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(submitOrder, sampler.next());
+        }
+    }
+
+    @Test
+    void loadsBundledProfile() throws IOException {
+        WorkloadProfile profile = WorkloadProfile.load("read-heavy");
+        assertEquals("read-heavy", profile.getName());
+        assertEquals("80", profile.getProperty("WEIGHT." + Utility.GET_PRODUCT_REVIEWS, "0"));
+    }
+
+    @Test
+    void missingProfileFails() {
+        assertThrows(IOException.class, () -> WorkloadProfile.load("no-such-profile"));
+    }
+
+    @Test
+    void profileOutranksOperationSpecificProperties() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("PRODUCT_KEY_DISTRIBUTION", "uniform");
+        properties.put("PRODUCT_KEY_DISTRIBUTION." + Utility.SUBMIT_ORDER, "hotspot");
+        WorkloadProfile profile = new WorkloadProfile("test", properties);
+
+        assertEquals("hotspot", profile.getOperationProperty("PRODUCT_KEY_DISTRIBUTION", Utility.SUBMIT_ORDER,
+                "latest"));
+        assertEquals("uniform", profile.getOperationProperty("PRODUCT_KEY_DISTRIBUTION", Utility.POST_REVIEW,
+                "latest"));
+        assertEquals("fallback", profile.getProperty("NOT_A_PROPERTY", "fallback"));
+    }
+}